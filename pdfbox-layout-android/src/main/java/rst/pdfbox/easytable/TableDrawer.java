@@ -7,17 +7,20 @@ import com.tom_roush.pdfbox.pdmodel.PDPageContentStream;
 
 import java.io.IOException;
 
-import rst.pdfbox.layout.util.ColorConverter;
+import rst.pdfbox.layout.text.GlyphWidths;
+import rst.pdfbox.layout.util.TrackingContentStream;
 
 public class TableDrawer {
 
     private final float tableStartX;
     private final float tableStartY;
     private final PDPageContentStream contentStream;
+    private final TrackingContentStream stream;
     private final Table table;
 
     public TableDrawer(final PDPageContentStream contentStream, final Table table, final float startX, final float startY) {
         this.contentStream = contentStream;
+        this.stream = new TrackingContentStream(contentStream);
         this.table = table;
         tableStartX = startX;
         tableStartY = startY - table.getFontHeight();
@@ -36,6 +39,7 @@ public class TableDrawer {
 
             if (row.getOnCustomDraw() != null) {
                 row.getOnCustomDraw().draw(contentStream, startX, startY);
+                stream.invalidate();
             } else {
                 final float rowHeight = table.getFontHeight() + row.getHeightWithoutFontHeight();
                 int columnCounter = 0;
@@ -64,6 +68,7 @@ public class TableDrawer {
     private void drawBorders() throws IOException {
         float startX;
         float startY = tableStartY;
+        Integer parentBorderColor = null;
 
         for (Row row : table.getRows()) {
             final float rowHeight = table.getFontHeight() + row.getHeightWithoutFontHeight();
@@ -80,77 +85,84 @@ public class TableDrawer {
                     float borderWidth = cell.getBorderWidthTop();
                     float correctionLeft = cell.hasBorderLeft() ? cell.getBorderWidthLeft() / 2 : 0;
                     float correctionRight = cell.hasBorderRight() ? cell.getBorderWidthRight() / 2 : 0;
-                    contentStream.setLineWidth(borderWidth);
+                    stream.setLineWidth(borderWidth);
                     contentStream.moveTo(startX - correctionLeft, startY + rowHeight);
                     contentStream.lineTo(startX + columnWidth + correctionRight, startY + rowHeight);
-                    contentStream.setStrokingColor(ColorConverter.convert(cell.getBorderColor()));
+                    stream.setStrokingColor(cell.getBorderColor());
                     contentStream.stroke();
-                    contentStream.setStrokingColor(ColorConverter.convert(cell.getParentBorderColor()));
+                    parentBorderColor = cell.getParentBorderColor();
                 }
 
                 if (cell.hasBorderBottom()) {
                     float borderWidth = cell.getBorderWidthBottom();
                     float correctionLeft = cell.hasBorderLeft() ? cell.getBorderWidthLeft() / 2 : 0;
                     float correctionRight = cell.hasBorderRight() ? cell.getBorderWidthRight() / 2 : 0;
-                    contentStream.setLineWidth(borderWidth);
+                    stream.setLineWidth(borderWidth);
                     contentStream.moveTo(startX - correctionLeft, startY);
                     contentStream.lineTo(startX + columnWidth + correctionRight, startY);
-                    contentStream.setStrokingColor(ColorConverter.convert(cell.getBorderColor()));
+                    stream.setStrokingColor(cell.getBorderColor());
                     contentStream.stroke();
-                    contentStream.setStrokingColor(ColorConverter.convert(cell.getParentBorderColor()));
+                    parentBorderColor = cell.getParentBorderColor();
                 }
 
                 if (cell.hasBorderLeft()) {
                     float borderWidth = cell.getBorderWidthLeft();
                     float correctionTop = cell.hasBorderTop() ? cell.getBorderWidthTop() / 2 : 0;
                     float correctionBottom = cell.hasBorderBottom() ? cell.getBorderWidthBottom() / 2 : 0;
-                    contentStream.setLineWidth(borderWidth);
+                    stream.setLineWidth(borderWidth);
                     contentStream.moveTo(startX, startY - correctionBottom);
                     contentStream.lineTo(startX, startY + rowHeight + correctionTop);
-                    contentStream.setStrokingColor(ColorConverter.convert(cell.getBorderColor()));
+                    stream.setStrokingColor(cell.getBorderColor());
                     contentStream.stroke();
-                    contentStream.setStrokingColor(ColorConverter.convert(cell.getParentBorderColor()));
+                    parentBorderColor = cell.getParentBorderColor();
                 }
 
                 if (cell.hasBorderRight()) {
                     float borderWidth = cell.getBorderWidthRight();
                     float correctionTop = cell.hasBorderTop() ? cell.getBorderWidthTop() / 2 : 0;
                     float correctionBottom = cell.hasBorderBottom() ? cell.getBorderWidthBottom() / 2 : 0;
-                    contentStream.setLineWidth(borderWidth);
+                    stream.setLineWidth(borderWidth);
                     contentStream.moveTo(startX + columnWidth, startY - correctionBottom);
                     contentStream.lineTo(startX + columnWidth, startY + rowHeight + correctionTop);
-                    contentStream.setStrokingColor(ColorConverter.convert(cell.getBorderColor()));
+                    stream.setStrokingColor(cell.getBorderColor());
                     contentStream.stroke();
-                    contentStream.setStrokingColor(ColorConverter.convert(cell.getParentBorderColor()));
+                    parentBorderColor = cell.getParentBorderColor();
                 }
 
                 startX += columnWidth;
                 columnCounter++;
             }
         }
+
+        // leave the stroking color of the last bordered row's parent, as
+        // the border color is just needed for the stroke
+        if (parentBorderColor != null) {
+            stream.setStrokingColor(parentBorderColor);
+        }
     }
 
     private void drawCellBackground(final Cell cell, final float startX, final float startY, final float width, final float height)
             throws IOException {
-        contentStream.setNonStrokingColor(ColorConverter.convert(cell.getBackgroundColor()));
+        stream.setNonStrokingColor(cell.getBackgroundColor());
 
         contentStream.addRect(startX, startY, width, height);
         contentStream.fill();
         contentStream.closePath();
 
         // Reset NonStroking Color to default value
-        contentStream.setNonStrokingColor(ColorConverter.convert(Color.BLACK));
+        stream.setNonStrokingColor(Color.BLACK);
     }
 
     private void drawCellText(final Cell cell, final float columnWidth, final float moveX, final float moveY) throws IOException {
         contentStream.beginText();
-        contentStream.setNonStrokingColor(ColorConverter.convert(cell.getTextColor()));
-        contentStream.setFont(cell.getFont() != null ? cell.getFont() : table.getFont(), table.getFontSize());
+        stream.setNonStrokingColor(cell.getTextColor());
+        stream.setFont(cell.getFont() != null ? cell.getFont() : table.getFont(), table.getFontSize());
 
         float xOffset = moveX + cell.getPaddingLeft();
         final float yOffset = moveY + cell.getPaddingBottom();
 
-        final float textWidth = (table.getFont().getStringWidth(cell.getText()) / 1000f) * table.getFontSize();
+        final float textWidth = (GlyphWidths.getInstance(table.getFont())
+                .getStringWidth(table.getFont(), cell.getText()) / 1000f) * table.getFontSize();
 
         switch (cell.getHorizontalAlignment()) {
             case RIGHT:
@@ -6,13 +6,21 @@ import com.tom_roush.pdfbox.pdmodel.common.PDRectangle;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import rst.pdfbox.layout.elements.render.Layout;
 import rst.pdfbox.layout.elements.render.LayoutHint;
@@ -21,6 +29,7 @@ import rst.pdfbox.layout.elements.render.RenderListener;
 import rst.pdfbox.layout.elements.render.Renderer;
 import rst.pdfbox.layout.elements.render.VerticalLayout;
 import rst.pdfbox.layout.elements.render.VerticalLayoutHint;
+import rst.pdfbox.layout.text.WidthRespecting;
 
 /**
  * The central class for creating a document.
@@ -32,12 +41,21 @@ public class Document implements RenderListener {
      */
     public final static PageFormat DEFAULT_PAGE_FORMAT = new PageFormat();
 
+    /**
+     * The default number of elements to look ahead for images to prefetch.
+     */
+    public final static int DEFAULT_IMAGE_PREFETCH_DISTANCE = 8;
+
     private final List<Entry<Element, LayoutHint>> elements = new ArrayList<>();
     private final List<Renderer> customRenderer = new CopyOnWriteArrayList<Renderer>();
     private final List<RenderListener> renderListener = new CopyOnWriteArrayList<RenderListener>();
 
     private PDDocument pdDocument;
+    private ImageRegistry imageRegistry;
     private PageFormat pageFormat;
+    private ExecutorService preLayoutExecutor;
+    private ExecutorService imagePrefetchExecutor;
+    private int imagePrefetchDistance = DEFAULT_IMAGE_PREFETCH_DISTANCE;
 
     /**
      * Creates a Document using the {@link #DEFAULT_PAGE_FORMAT}.
@@ -224,11 +242,28 @@ public class Document implements RenderListener {
         return pdDocument;
     }
 
+    /**
+     * Returns the registry used to create the images of the
+     * {@link #getPDDocument() PDDocument} to be created, so the same image is
+     * embedded only once, no matter how many {@link ImageElement}s show it.
+     * Like the PDDocument, it is released after rendering.
+     *
+     * @return the image registry of the PDDocument to be used on the next call
+     * to {@link #render()}.
+     */
+    public ImageRegistry getImageRegistry() {
+        if (imageRegistry == null) {
+            imageRegistry = ImageRegistry.getInstance(getPDDocument());
+        }
+        return imageRegistry;
+    }
+
     /**
      * Called after {@link #render()} in order to release the current document.
      */
     protected void resetPDDocument() {
         this.pdDocument = null;
+        this.imageRegistry = null;
     }
 
     /**
@@ -254,6 +289,72 @@ public class Document implements RenderListener {
         customRenderer.remove(renderer);
     }
 
+    /**
+     * @return the executor used to pre-layout text, or <code>null</code> if
+     * text is laid out while rendering.
+     */
+    public ExecutorService getPreLayoutExecutor() {
+        return preLayoutExecutor;
+    }
+
+    /**
+     * Sets an executor used to wrap and measure the text of all paragraphs in
+     * parallel before the elements are rendered (sequentially). Rendering then
+     * uses the prepared layouts, as long as the paragraph is laid out for the
+     * width predicted in advance; otherwise it is simply wrapped again. The
+     * executor is not shut down by the document.
+     *
+     * @param preLayoutExecutor the executor to use, or <code>null</code> to
+     *                          lay out text while rendering (default).
+     */
+    public void setPreLayoutExecutor(final ExecutorService preLayoutExecutor) {
+        this.preLayoutExecutor = preLayoutExecutor;
+    }
+
+    /**
+     * @return the executor used to prefetch images, or <code>null</code> if
+     * images are created when drawn.
+     */
+    public ExecutorService getImagePrefetchExecutor() {
+        return imagePrefetchExecutor;
+    }
+
+    /**
+     * Sets an executor used to prepare the images of upcoming
+     * {@link ImageElement}s while rendering: before an element is rendered,
+     * the images of the elements up to the
+     * {@link #setImagePrefetchDistance(int) prefetch distance} after it are
+     * decoded and encoded in the background, so they just need to be added to
+     * the PDF document when drawn. This applies to image elements created from a bitmap or an
+     * {@link ImageSource} only. The executor is not shut down by the document.
+     *
+     * @param imagePrefetchExecutor the executor to use, or <code>null</code>
+     *                              to create images when drawn (default).
+     */
+    public void setImagePrefetchExecutor(
+            final ExecutorService imagePrefetchExecutor) {
+        this.imagePrefetchExecutor = imagePrefetchExecutor;
+    }
+
+    /**
+     * @return the number of elements to look ahead for images to prefetch.
+     */
+    public int getImagePrefetchDistance() {
+        return imagePrefetchDistance;
+    }
+
+    /**
+     * Sets the number of elements to look ahead for images to prefetch.
+     * Default is {@link #DEFAULT_IMAGE_PREFETCH_DISTANCE}. The larger the
+     * distance, the more images may be kept in memory at once, though
+     * encoded.
+     *
+     * @param imagePrefetchDistance the number of elements.
+     */
+    public void setImagePrefetchDistance(final int imagePrefetchDistance) {
+        this.imagePrefetchDistance = imagePrefetchDistance;
+    }
+
     /**
      * Renders all elements and returns the resulting {@link PDDocument}.
      *
@@ -261,14 +362,50 @@ public class Document implements RenderListener {
      * @throws IOException by pdfbox
      */
     public PDDocument render() throws IOException {
+        if (preLayoutExecutor != null) {
+            preLayout(preLayoutExecutor);
+        }
         PDDocument document = getPDDocument();
+        ImagePrefetcher imagePrefetcher = null;
+        if (imagePrefetchExecutor != null) {
+            imagePrefetcher = new ImagePrefetcher(elements, getPageFormat(),
+                    getImageRegistry(), imagePrefetchExecutor,
+                    imagePrefetchDistance);
+        }
+        boolean rendered = false;
+        try {
+            renderElements(document, imagePrefetcher);
+            rendered = true;
+        } finally {
+            if (imagePrefetcher != null) {
+                if (!rendered) {
+                    imagePrefetcher.cancel();
+                }
+                imagePrefetcher.finish();
+            }
+        }
+
+        resetPDDocument();
+        return document;
+    }
+
+    private void renderElements(final PDDocument document,
+                                final ImagePrefetcher imagePrefetcher) throws IOException {
         RenderContext renderContext = new RenderContext(this, document);
-        for (Entry<Element, LayoutHint> entry : elements) {
+        for (int index = 0; index < elements.size(); ++index) {
+            if (imagePrefetcher != null) {
+                imagePrefetcher.advance(index);
+            }
+            Entry<Element, LayoutHint> entry = elements.get(index);
             Element element = entry.getKey();
             LayoutHint layoutHint = entry.getValue();
             boolean success = false;
 
             // first ask custom renderer to render the element
+            if (!customRenderer.isEmpty()) {
+                // which may draw anywhere on the page
+                renderContext.unclipContent();
+            }
             Iterator<Renderer> customRendererIterator = customRenderer
                     .iterator();
             while (!success && customRendererIterator.hasNext()) {
@@ -291,9 +428,96 @@ public class Document implements RenderListener {
             }
         }
         renderContext.close();
+    }
 
-        resetPDDocument();
-        return document;
+    /**
+     * Wraps and measures all paragraphs in parallel using the given executor.
+     * The width of each paragraph is predicted the way the current layout
+     * will calculate it while rendering, so any custom renderer or page format
+     * change in between may cause the text to be wrapped again. A paragraph
+     * added more than once is laid out once, for its first occurrence.
+     *
+     * @param executor the executor to use.
+     * @throws IOException by pdfbox
+     */
+    protected void preLayout(final ExecutorService executor)
+            throws IOException {
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        Set<Paragraph> submitted = Collections
+                .newSetFromMap(new IdentityHashMap<Paragraph, Boolean>());
+        PageFormat currentPageFormat = getPageFormat();
+        Layout layout = new VerticalLayout();
+        try {
+            for (Entry<Element, LayoutHint> entry : elements) {
+                Element element = entry.getKey();
+                if (element instanceof PageFormat) {
+                    currentPageFormat = (PageFormat) element;
+                } else if (element instanceof Layout) {
+                    layout = (Layout) element;
+                } else if (element instanceof Paragraph
+                        && submitted.add((Paragraph) element)) {
+                    final Paragraph paragraph = (Paragraph) element;
+                    final float maxWidth = getPreLayoutWidth(paragraph,
+                            entry.getValue(), layout, currentPageFormat);
+                    futures.add(executor.submit(new Callable<Void>() {
+
+                        @Override
+                        public Void call() throws Exception {
+                            paragraph.prepareLayout(maxWidth);
+                            return null;
+                        }
+                    }));
+                }
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("pre-layout interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            for (Future<Void> future : futures) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Predicts the max width the given drawable will be rendered with, the
+     * way the given layout will calculate it.
+     */
+    static <T extends Drawable & WidthRespecting> float getPreLayoutWidth(
+            final T drawable, final LayoutHint layoutHint, final Layout layout,
+            final PageFormat pageFormat) throws IOException {
+        if (drawable.getMaxWidth() >= 0 || !(layout instanceof VerticalLayout)
+                || drawable.getAbsolutePosition() != null) {
+            return drawable.getMaxWidth();
+        }
+        PDRectangle mediaBox = pageFormat.getMediaBox();
+        float pageWidth = Math.min(mediaBox.getWidth(), mediaBox.getHeight());
+        if (pageFormat.getOrientation() == Orientation.Landscape) {
+            pageWidth = Math.max(mediaBox.getWidth(), mediaBox.getHeight());
+        }
+        float targetWidth = ((VerticalLayout) layout).getTargetWidth(pageWidth
+                - pageFormat.getMarginLeft() - pageFormat.getMarginRight());
+        if (layoutHint instanceof VerticalLayoutHint) {
+            VerticalLayoutHint verticalLayoutHint = (VerticalLayoutHint) layoutHint;
+            targetWidth -= verticalLayoutHint.getMarginLeft();
+            targetWidth -= verticalLayoutHint.getMarginRight();
+        }
+        return targetWidth;
     }
 
     /**
@@ -0,0 +1,158 @@
+package rst.pdfbox.layout.elements;
+
+import android.graphics.Bitmap;
+
+import com.tom_roush.pdfbox.cos.COSArray;
+import com.tom_roush.pdfbox.cos.COSDictionary;
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.graphics.color.PDColorSpace;
+import com.tom_roush.pdfbox.pdmodel.graphics.color.PDDeviceGray;
+import com.tom_roush.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
+import com.tom_roush.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+
+/**
+ * The encoded data of an image, which is not yet an image XObject. Encoding
+ * is pure CPU work and may run on any thread, while
+ * {@link #createImage(PDDocument) creating} the XObject modifies the PDF
+ * document, which is not thread-safe, and so must be done by the thread
+ * drawing.
+ */
+final class EncodedImage {
+
+    private final byte[] data;
+    private final COSName filter;
+    private final int width;
+    private final int height;
+    private final int bitsPerComponent;
+    private final PDColorSpace colorSpace;
+    private COSDictionary decodeParms;
+    private COSArray decode;
+    private EncodedImage softMask;
+
+    /**
+     * Creates an encoded image.
+     *
+     * @param data             the encoded data.
+     * @param filter           the filter to decode the data with.
+     * @param width            the width in pixels.
+     * @param height           the height in pixels.
+     * @param bitsPerComponent the bits per color component.
+     * @param colorSpace       the color space.
+     */
+    EncodedImage(final byte[] data, final COSName filter, final int width,
+                 final int height, final int bitsPerComponent,
+                 final PDColorSpace colorSpace) {
+        this.data = data;
+        this.filter = filter;
+        this.width = width;
+        this.height = height;
+        this.bitsPerComponent = bitsPerComponent;
+        this.colorSpace = colorSpace;
+    }
+
+    /**
+     * Encodes the given bitmap lossless, as RGB samples with the alpha
+     * channel as soft mask, if any.
+     *
+     * @param bitmap the bitmap to encode.
+     * @return the encoded image.
+     */
+    static EncodedImage encodeLossless(final Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        byte[] rgb = new byte[width * height * 3];
+        byte[] alpha = bitmap.hasAlpha() ? new byte[width * height] : null;
+        int[] row = new int[width];
+        int rgbIndex = 0;
+        int alphaIndex = 0;
+        for (int y = 0; y < height; ++y) {
+            bitmap.getPixels(row, 0, width, 0, y, width, 1);
+            for (int pixel : row) {
+                rgb[rgbIndex++] = (byte) (pixel >> 16);
+                rgb[rgbIndex++] = (byte) (pixel >> 8);
+                rgb[rgbIndex++] = (byte) pixel;
+                if (alpha != null) {
+                    alpha[alphaIndex++] = (byte) (pixel >>> 24);
+                }
+            }
+        }
+
+        EncodedImage image = new EncodedImage(deflate(rgb),
+                COSName.FLATE_DECODE, width, height, 8, PDDeviceRGB.INSTANCE);
+        if (alpha != null) {
+            image.softMask = new EncodedImage(deflate(alpha),
+                    COSName.FLATE_DECODE, width, height, 8,
+                    PDDeviceGray.INSTANCE);
+        }
+        return image;
+    }
+
+    /**
+     * Sets the parameters of the filter.
+     *
+     * @param decodeParms the parameters, or <code>null</code>.
+     */
+    void setDecodeParms(final COSDictionary decodeParms) {
+        this.decodeParms = decodeParms;
+    }
+
+    /**
+     * Sets the decode array, which maps the samples to the color space.
+     *
+     * @param decode the decode array, or <code>null</code>.
+     */
+    void setDecode(final COSArray decode) {
+        this.decode = decode;
+    }
+
+    /**
+     * Creates the image XObject in the given document. This must be called by
+     * the thread working on the document.
+     *
+     * @param pdDocument the document to create the image in.
+     * @return the image.
+     * @throws IOException by pdfbox
+     */
+    PDImageXObject createImage(final PDDocument pdDocument)
+            throws IOException {
+        PDImageXObject image = new PDImageXObject(pdDocument,
+                new ByteArrayInputStream(data), filter, width, height,
+                bitsPerComponent, colorSpace);
+        if (decodeParms != null) {
+            image.getCOSObject().setItem(COSName.DECODE_PARMS, decodeParms);
+        }
+        if (decode != null) {
+            image.getCOSObject().setItem(COSName.DECODE, decode);
+        }
+        if (softMask != null) {
+            image.getCOSObject().setItem(COSName.SMASK,
+                    softMask.createImage(pdDocument));
+        }
+        return image;
+    }
+
+    private static byte[] deflate(final byte[] data) {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(
+                    data.length / 2 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+}
@@ -1,10 +1,14 @@
 package rst.pdfbox.layout.elements;
 
+import android.graphics.Bitmap;
+
 import com.tom_roush.pdfbox.pdmodel.PDDocument;
 import com.tom_roush.pdfbox.pdmodel.PDPageContentStream;
 import com.tom_roush.pdfbox.pdmodel.graphics.image.PDImageXObject;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import rst.pdfbox.layout.text.DrawListener;
 import rst.pdfbox.layout.text.Position;
@@ -20,24 +24,185 @@ public class ImageElement implements Element, Drawable, Dividable,
     public final static float SCALE_TO_RESPECT_WIDTH = -1f;
 
     private PDImageXObject image;
+    private Bitmap bitmap;
+    private ImageSource source;
+    private final int imageWidth;
+    private final int imageHeight;
     private float width;
     private float height;
     private float maxWidth = -1;
     private Position absolutePosition;
+    private ImageOptimizer imageOptimizer;
+    private byte[] contentHash;
+    private PDDocument drawnDocument;
+    private ImageRegistry drawnRegistry;
+    private PDImageXObject drawnImage;
+    private float drawnWidth;
+    private float drawnHeight;
+    private EncodedImage preparedImage;
+    private float preparedWidth;
+    private float preparedHeight;
 
     public ImageElement(final PDImageXObject image) {
         this.image = image;
-        this.width = image.getWidth();
-        this.height = image.getHeight();
+        this.imageWidth = image.getWidth();
+        this.imageHeight = image.getHeight();
+        this.width = imageWidth;
+        this.height = imageHeight;
+    }
+
+    /**
+     * Creates an image element from a bitmap, which is turned into an image
+     * when drawn. By default, it is embedded lossless in its full resolution;
+     * set an {@link #setImageOptimizer(ImageOptimizer) image optimizer} in
+     * order to fit resolution and encoding to the size drawn. The image is
+     * shared with all other elements showing the same pixels, see
+     * {@link ImageRegistry}, so the bitmap must not be changed once drawn.
+     *
+     * @param bitmap the bitmap to draw.
+     */
+    public ImageElement(final Bitmap bitmap) {
+        this.bitmap = bitmap;
+        this.imageWidth = bitmap.getWidth();
+        this.imageHeight = bitmap.getHeight();
+        this.width = imageWidth;
+        this.height = imageHeight;
+    }
+
+    /**
+     * Creates an image element from a source, of which only the header is
+     * read for the size of the image. The image is decoded when drawn, and
+     * the pixels are released as soon as the image is embedded. By default,
+     * it is embedded lossless in its full resolution, except for JPEGs, which
+     * are embedded as they are; set an
+     * {@link #setImageOptimizer(ImageOptimizer) image optimizer} in order to
+     * fit resolution and encoding to the size drawn. The image is shared with
+     * all other elements showing the same image, see {@link ImageRegistry}.
+     *
+     * @param source the source of the image.
+     * @throws IOException if the header of the image could not be read.
+     */
+    public ImageElement(final ImageSource source) throws IOException {
+        this.source = source;
+        this.imageWidth = source.getWidth();
+        this.imageHeight = source.getHeight();
+        this.width = imageWidth;
+        this.height = imageHeight;
+    }
+
+    /**
+     * Creates an image element from JPEG data, which is embedded as it is.
+     * Just the header is parsed for the size and color space of the image,
+     * the image is neither decoded nor encoded again. JPEGs not supported by
+     * PDF readers, like lossless or 12 bit ones, are decoded when drawn like
+     * an {@link #ImageElement(ImageSource) image source} instead.
+     *
+     * @param pdDocument the document to create the image in.
+     * @param jpeg       the JPEG data.
+     * @return the image element.
+     * @throws IOException if the JPEG could neither be parsed nor decoded.
+     */
+    public static ImageElement fromJpeg(final PDDocument pdDocument,
+                                        final byte[] jpeg) throws IOException {
+        try {
+            return new ImageElement(JpegPassThrough.createFromJpeg(pdDocument,
+                    jpeg));
+        } catch (IOException e) {
+            return fromDecodedJpeg(ByteBuffer.wrap(jpeg), e);
+        }
+    }
+
+    /**
+     * Creates an image element from JPEG data read from the given channel,
+     * starting at its current position. The data is embedded as it is, see
+     * {@link #fromJpeg(PDDocument, byte[])}.
+     *
+     * @param pdDocument the document to create the image in.
+     * @param channel    the channel to read the JPEG data from, which is not
+     *                   closed.
+     * @return the image element.
+     * @throws IOException if the channel could not be read or the JPEG could
+     *                     neither be parsed nor decoded.
+     */
+    public static ImageElement fromJpeg(final PDDocument pdDocument,
+                                        final FileChannel channel) throws IOException {
+        long start = channel.position();
+        try {
+            return new ImageElement(JpegPassThrough.createFromJpeg(pdDocument,
+                    channel));
+        } catch (IOException e) {
+            channel.position(start);
+            ByteBuffer jpeg = ByteBuffer.allocate((int) (channel.size() - start));
+            while (jpeg.hasRemaining() && channel.read(jpeg) >= 0) {
+                // read all
+            }
+            jpeg.flip();
+            return fromDecodedJpeg(jpeg, e);
+        }
+    }
+
+    /**
+     * Creates an element decoding the given JPEG when drawn, since it could
+     * not be passed through.
+     *
+     * @param jpeg  the JPEG data.
+     * @param cause the failure of passing it through, which is thrown if the
+     *              JPEG can not be decoded either.
+     */
+    private static ImageElement fromDecodedJpeg(final ByteBuffer jpeg,
+                                                final IOException cause) throws IOException {
+        try {
+            return new ImageElement(ImageSource.fromBuffer(jpeg));
+        } catch (IOException e) {
+            throw cause;
+        }
+    }
+
+    /**
+     * Creates an image element from JPEG 2000 data (JP2 file format or raw
+     * code stream), which is embedded as it is. Just the header is parsed for
+     * the size of the image, the image is neither decoded nor encoded again.
+     *
+     * @param pdDocument the document to create the image in.
+     * @param jpeg2000   the JPEG 2000 data.
+     * @return the image element.
+     * @throws IOException if the JPEG 2000 header could not be parsed.
+     */
+    public static ImageElement fromJpeg2000(final PDDocument pdDocument,
+                                            final byte[] jpeg2000) throws IOException {
+        return new ImageElement(JpegPassThrough.createFromJpeg2000(pdDocument,
+                jpeg2000));
+    }
+
+    /**
+     * Creates an image element from JPEG 2000 data read from the given
+     * channel, starting at its current position. The data is embedded as it
+     * is, see {@link #fromJpeg2000(PDDocument, byte[])}.
+     *
+     * @param pdDocument the document to create the image in.
+     * @param channel    the channel to read the JPEG 2000 data from, which is
+     *                   not closed.
+     * @return the image element.
+     * @throws IOException if the channel could not be read or the JPEG 2000
+     *                     header could not be parsed.
+     */
+    public static ImageElement fromJpeg2000(final PDDocument pdDocument,
+                                            final FileChannel channel) throws IOException {
+        return new ImageElement(JpegPassThrough.createFromJpeg2000(pdDocument,
+                channel));
     }
 
     @Override
     public float getWidth() {
+        return getWidth(getMaxWidth());
+    }
+
+    private float getWidth(final float maxWidth) {
         if (width == SCALE_TO_RESPECT_WIDTH) {
-            if (getMaxWidth() > 0 && image.getWidth() > getMaxWidth()) {
-                return getMaxWidth();
+            if (maxWidth > 0 && imageWidth > maxWidth) {
+                return maxWidth;
             }
-            return image.getWidth();
+            return imageWidth;
         }
         return width;
     }
@@ -55,12 +220,15 @@ public class ImageElement implements Element, Drawable, Dividable,
 
     @Override
     public float getHeight() {
+        return getHeight(getMaxWidth());
+    }
+
+    private float getHeight(final float maxWidth) {
         if (height == SCALE_TO_RESPECT_WIDTH) {
-            if (getMaxWidth() > 0 && image.getWidth() > getMaxWidth()) {
-                return getMaxWidth() / (float) image.getWidth()
-                        * (float) image.getHeight();
+            if (maxWidth > 0 && imageWidth > maxWidth) {
+                return maxWidth / (float) imageWidth * (float) imageHeight;
             }
-            return image.getHeight();
+            return imageHeight;
         }
         return height;
     }
@@ -110,9 +278,175 @@ public class ImageElement implements Element, Drawable, Dividable,
         this.absolutePosition = absolutePosition;
     }
 
+    /**
+     * @return the optimizer applied to a bitmap when drawn, or
+     * <code>null</code>.
+     */
+    public ImageOptimizer getImageOptimizer() {
+        return imageOptimizer;
+    }
+
+    /**
+     * Sets an optimizer, which downsamples and encodes the bitmap for the size
+     * it is drawn with. This only applies to elements
+     * {@link #ImageElement(Bitmap) created from a bitmap} or
+     * {@link #ImageElement(ImageSource) source}, since an image passed in is
+     * already encoded.
+     *
+     * @param imageOptimizer the optimizer to use, or <code>null</code> to
+     *                       embed the bitmap lossless in its full resolution
+     *                       (resp. a JPEG source as it is).
+     */
+    public void setImageOptimizer(ImageOptimizer imageOptimizer) {
+        this.imageOptimizer = imageOptimizer;
+    }
+
+    /**
+     * Returns the image to draw to the given document, which is created from
+     * the bitmap resp. source on the first draw.
+     *
+     * @param pdDocument the document to draw to.
+     * @return the image to draw.
+     * @throws IOException by pdfbox
+     */
+    protected synchronized PDImageXObject getImage(final PDDocument pdDocument)
+            throws IOException {
+        return getImage(pdDocument, getWidth(), getHeight());
+    }
+
+    /**
+     * @return <code>true</code> if the image is created from a bitmap resp.
+     * source when drawn, and so may be {@link #prepareImage(float) prepared}
+     * in advance.
+     */
+    boolean isImageCreatedOnDraw() {
+        return image == null;
+    }
+
+    /**
+     * Decodes, downsamples and encodes the image in advance, so it is just
+     * wrapped into an image XObject when the element is drawn. This may be
+     * called by another thread than the one drawing, so it does not touch any
+     * document, which is not thread-safe. If the element is drawn with
+     * another size than expected, the image is encoded again when drawn.
+     *
+     * @param imageRegistry the registry of the document to draw to, where
+     *                      images already created are not encoded again.
+     * @param maxWidth      the max width the element is expected to be drawn
+     *                      with, if it is not set.
+     * @throws IOException if the image could not be decoded or encoded.
+     */
+    synchronized void prepareImage(final ImageRegistry imageRegistry,
+                                   final float maxWidth) throws IOException {
+        float expectedMaxWidth = getMaxWidth() >= 0 ? getMaxWidth() : maxWidth;
+        float width = getWidth(expectedMaxWidth);
+        float height = getHeight(expectedMaxWidth);
+        if (image != null || isPrepared(width, height)
+                || imageRegistry.contains(getImageKey(width, height))) {
+            return;
+        }
+        preparedImage = encodeImage(width, height);
+        preparedWidth = width;
+        preparedHeight = height;
+    }
+
+    /**
+     * @return <code>true</code> if the image has been prepared for the given
+     * size.
+     */
+    private boolean isPrepared(final float width, final float height) {
+        return preparedImage != null && (imageOptimizer == null
+                || width == preparedWidth && height == preparedHeight);
+    }
+
+    /**
+     * Returns the image to draw with the given size, which is taken from the
+     * {@link ImageRegistry} of the document, or (re-)created if not done for
+     * the document yet, or if the optimizer was applied for another size.
+     */
+    private PDImageXObject getImage(final PDDocument pdDocument,
+                                    final float width, final float height) throws IOException {
+        if (image != null) {
+            return image;
+        }
+        if (drawnDocument != pdDocument || imageOptimizer != null
+                && (width != drawnWidth || height != drawnHeight)) {
+            ImageRegistry imageRegistry = ImageRegistry.getInstance(pdDocument);
+            Object key = getImageKey(width, height);
+            PDImageXObject registered = imageRegistry.getImage(key);
+            if (registered == null) {
+                EncodedImage encoded = isPrepared(width, height) ? preparedImage
+                        : encodeImage(width, height);
+                registered = imageRegistry.getImage(key, encoded);
+            }
+            preparedImage = null;
+            drawnImage = registered;
+            drawnDocument = pdDocument;
+            // keeps the registry alive for the elements sharing the image
+            drawnRegistry = imageRegistry;
+            drawnWidth = width;
+            drawnHeight = height;
+        }
+        return drawnImage;
+    }
+
+    /**
+     * @return the key of the image drawn with the given size in the
+     * {@link ImageRegistry}.
+     */
+    private Object getImageKey(final float width, final float height)
+            throws IOException {
+        if (contentHash == null) {
+            contentHash = bitmap != null ? ImageRegistry.hash(bitmap)
+                    : ImageRegistry.hash(source.readBytes());
+        }
+        return ImageRegistry.getKey(contentHash, imageOptimizer, width,
+                height);
+    }
+
+    /**
+     * Encodes the bitmap resp. source for the given size.
+     */
+    private EncodedImage encodeImage(final float width, final float height)
+            throws IOException {
+        if (imageOptimizer == null && source != null && source.isJpeg()) {
+            try {
+                return JpegPassThrough.encodeJpeg(source.readBytes());
+            } catch (IOException e) {
+                // not supported by the DCTDecode filter, so decode it
+            }
+        }
+        Bitmap pixels = bitmap;
+        if (pixels == null) {
+            pixels = source.decode(getSampleSize(width, height));
+        }
+        try {
+            if (imageOptimizer != null) {
+                return imageOptimizer.encode(pixels, width, height);
+            }
+            return EncodedImage.encodeLossless(pixels);
+        } finally {
+            if (pixels != bitmap) {
+                pixels.recycle();
+            }
+        }
+    }
+
+    /**
+     * @return the factor to subsample the source by while decoding.
+     */
+    private int getSampleSize(final float width, final float height) {
+        if (imageOptimizer == null) {
+            return 1;
+        }
+        return imageOptimizer.getSampleSize(imageWidth, imageHeight, width,
+                height);
+    }
+
     @Override
     public void draw(PDDocument pdDocument, PDPageContentStream contentStream, Position upperLeft, DrawListener drawListener) throws IOException {
-        contentStream.drawImage(image, upperLeft.getX(), upperLeft.getY() - image.getHeight());
+        contentStream.drawImage(getImage(pdDocument), upperLeft.getX(),
+                upperLeft.getY() - getHeight(), getWidth(), getHeight());
         if (drawListener != null) {
             drawListener.drawn(this, upperLeft, getWidth(), getHeight());
         }
@@ -0,0 +1,370 @@
+package rst.pdfbox.layout.elements;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import com.tom_roush.pdfbox.cos.COSDictionary;
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.graphics.color.PDDeviceGray;
+import com.tom_roush.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import rst.pdfbox.layout.util.CCITTFaxG4Encoder;
+
+/**
+ * Turns a bitmap into an image sized and encoded for the area it is drawn to.
+ * If the effective resolution of the placed bitmap exceeds the target
+ * resolution, it is downsampled to the target. The encoding is chosen by the
+ * content of the bitmap:
+ * <ul>
+ * <li>black and white only, like scanned text: CCITT group 4</li>
+ * <li>transparent or at most {@value #MAX_FLATE_COLORS} colors, like
+ * graphics or screenshots: lossless (Flate)</li>
+ * <li>anything else, like photos: JPEG (DCT)</li>
+ * </ul>
+ * <p>
+ * Set it on an image element created from a
+ * {@link ImageElement#ImageElement(Bitmap) bitmap} or
+ * {@link ImageElement#ImageElement(ImageSource) source}, and it is applied
+ * when the element is drawn.
+ */
+public class ImageOptimizer {
+
+    /**
+     * The encodings an image may be embedded with.
+     */
+    public enum Encoding {
+        /**
+         * JPEG.
+         */
+        DCT,
+        /**
+         * Lossless deflate.
+         */
+        FLATE,
+        /**
+         * CCITT group 4, for black and white images only.
+         */
+        CCITT_G4
+    }
+
+    /**
+     * The default target resolution of color and grayscale images.
+     */
+    public final static float DEFAULT_TARGET_DPI = 150;
+
+    /**
+     * The default target resolution of black and white images, which need a
+     * higher resolution in order to look sharp.
+     */
+    public final static float DEFAULT_BILEVEL_TARGET_DPI = 300;
+
+    /**
+     * Images with more colors are considered photos.
+     */
+    public final static int MAX_FLATE_COLORS = 256;
+
+    private final static float POINTS_PER_INCH = 72;
+
+    /**
+     * The tolerance for the components of a pixel to still count as black
+     * resp. white.
+     */
+    private final static int BILEVEL_TOLERANCE = 32;
+
+    private float targetDpi = DEFAULT_TARGET_DPI;
+    private float bilevelTargetDpi = DEFAULT_BILEVEL_TARGET_DPI;
+    private float downsampleThreshold = 1.5f;
+    private float jpegQuality = 0.75f;
+    private boolean bilevelEncoding = true;
+
+    /**
+     * @return the target resolution of color and grayscale images.
+     */
+    public float getTargetDpi() {
+        return targetDpi;
+    }
+
+    /**
+     * Sets the target resolution of color and grayscale images. Default is
+     * {@link #DEFAULT_TARGET_DPI}.
+     *
+     * @param targetDpi the target resolution in dots per inch.
+     */
+    public void setTargetDpi(float targetDpi) {
+        this.targetDpi = targetDpi;
+    }
+
+    /**
+     * @return the target resolution of black and white images.
+     */
+    public float getBilevelTargetDpi() {
+        return bilevelTargetDpi;
+    }
+
+    /**
+     * Sets the target resolution of black and white images. Default is
+     * {@link #DEFAULT_BILEVEL_TARGET_DPI}.
+     *
+     * @param bilevelTargetDpi the target resolution in dots per inch.
+     */
+    public void setBilevelTargetDpi(float bilevelTargetDpi) {
+        this.bilevelTargetDpi = bilevelTargetDpi;
+    }
+
+    /**
+     * @return the factor the effective resolution must exceed the target
+     * resolution by in order to downsample.
+     */
+    public float getDownsampleThreshold() {
+        return downsampleThreshold;
+    }
+
+    /**
+     * Sets the factor the effective resolution must exceed the target
+     * resolution by in order to downsample, so images slightly above the
+     * target are not resampled for a negligible gain. Default is
+     * <code>1.5</code>.
+     *
+     * @param downsampleThreshold the threshold factor, at least <code>1</code>.
+     */
+    public void setDownsampleThreshold(float downsampleThreshold) {
+        this.downsampleThreshold = downsampleThreshold;
+    }
+
+    /**
+     * @return the quality of JPEG encoded images.
+     */
+    public float getJpegQuality() {
+        return jpegQuality;
+    }
+
+    /**
+     * Sets the quality of JPEG encoded images. Default is <code>0.75</code>.
+     *
+     * @param jpegQuality the quality from <code>0</code> to <code>1</code>.
+     */
+    public void setJpegQuality(float jpegQuality) {
+        this.jpegQuality = jpegQuality;
+    }
+
+    /**
+     * @return <code>true</code> if black and white images are encoded with
+     * CCITT group 4.
+     */
+    public boolean isBilevelEncoding() {
+        return bilevelEncoding;
+    }
+
+    /**
+     * Indicates if black and white images are encoded with CCITT group 4.
+     * Otherwise they are encoded lossless. Default is <code>true</code>.
+     *
+     * @param bilevelEncoding <code>true</code> to use CCITT group 4.
+     */
+    public void setBilevelEncoding(boolean bilevelEncoding) {
+        this.bilevelEncoding = bilevelEncoding;
+    }
+
+    /**
+     * Creates the image to draw the given bitmap with in an area of the given
+     * size.
+     *
+     * @param pdDocument the document to create the image in.
+     * @param bitmap     the bitmap to draw.
+     * @param width      the width of the area to draw the bitmap to.
+     * @param height     the height of the area to draw the bitmap to.
+     * @return the optimized image.
+     * @throws IOException by pdfbox
+     */
+    public PDImageXObject optimize(final PDDocument pdDocument,
+                                   final Bitmap bitmap, final float width, final float height)
+            throws IOException {
+        return encode(bitmap, width, height).createImage(pdDocument);
+    }
+
+    /**
+     * Downsamples and encodes the given bitmap like
+     * {@link #optimize(PDDocument, Bitmap, float, float)}, but does not create
+     * the image in a document yet. So this may be called by any thread.
+     *
+     * @param bitmap the bitmap to draw.
+     * @param width  the width of the area to draw the bitmap to.
+     * @param height the height of the area to draw the bitmap to.
+     * @return the encoded image.
+     * @throws IOException if the bitmap could not be encoded.
+     */
+    EncodedImage encode(final Bitmap bitmap, final float width,
+                        final float height) throws IOException {
+        Encoding encoding = chooseEncoding(bitmap);
+        float dpi = encoding == Encoding.CCITT_G4 ? bilevelTargetDpi
+                : targetDpi;
+        Bitmap scaled = downsample(bitmap, width, height, dpi);
+        try {
+            switch (encoding) {
+                case CCITT_G4:
+                    return encodeBilevel(scaled);
+                case DCT:
+                    return encodeJpeg(scaled);
+                default:
+                    return EncodedImage.encodeLossless(scaled);
+            }
+        } finally {
+            if (scaled != bitmap) {
+                scaled.recycle();
+            }
+        }
+    }
+
+    /**
+     * Returns the factor an image of the given size may be subsampled by
+     * while decoding, so it still has at least the target resolution (of
+     * black and white images, if higher) when drawn with the given size.
+     *
+     * @param imageWidth  the width of the image in pixels.
+     * @param imageHeight the height of the image in pixels.
+     * @param width       the width of the area to draw the image to.
+     * @param height      the height of the area to draw the image to.
+     * @return the sample size, which is a power of two.
+     */
+    public int getSampleSize(final int imageWidth, final int imageHeight,
+                             final float width, final float height) {
+        if (width <= 0 || height <= 0) {
+            return 1;
+        }
+        float dpi = Math.max(targetDpi, bilevelTargetDpi);
+        float effectiveDpi = Math.min(imageWidth * POINTS_PER_INCH / width,
+                imageHeight * POINTS_PER_INCH / height);
+        int sampleSize = 1;
+        while (effectiveDpi / (sampleSize * 2) >= dpi) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Chooses the encoding by the content of the given bitmap.
+     *
+     * @param bitmap the bitmap to encode.
+     * @return the encoding to use.
+     */
+    protected Encoding chooseEncoding(final Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        boolean bilevel = true;
+        boolean transparent = false;
+        Set<Integer> colors = new HashSet<Integer>();
+
+        int[] row = new int[width];
+        for (int y = 0; y < height; ++y) {
+            bitmap.getPixels(row, 0, width, 0, y, width, 1);
+            for (int pixel : row) {
+                if (Color.alpha(pixel) != 0xff) {
+                    transparent = true;
+                    bilevel = false;
+                }
+                if (bilevel && !isBlackOrWhite(pixel)) {
+                    bilevel = false;
+                }
+                if (colors.size() <= MAX_FLATE_COLORS) {
+                    colors.add(pixel);
+                }
+            }
+            if (!bilevel && (transparent || !bitmap.hasAlpha())
+                    && colors.size() > MAX_FLATE_COLORS) {
+                // nothing left to find out
+                break;
+            }
+        }
+
+        if (bilevel && bilevelEncoding) {
+            return Encoding.CCITT_G4;
+        }
+        if (transparent || colors.size() <= MAX_FLATE_COLORS) {
+            return Encoding.FLATE;
+        }
+        return Encoding.DCT;
+    }
+
+    /**
+     * Scales the bitmap to the given resolution, if its effective resolution
+     * exceeds it by the {@link #getDownsampleThreshold() threshold}.
+     *
+     * @return the scaled bitmap, or the given one if not downsampled.
+     */
+    private Bitmap downsample(final Bitmap bitmap, final float width,
+                              final float height, final float dpi) {
+        if (width <= 0 || height <= 0) {
+            return bitmap;
+        }
+        float dpiX = bitmap.getWidth() * POINTS_PER_INCH / width;
+        float dpiY = bitmap.getHeight() * POINTS_PER_INCH / height;
+        float effectiveDpi = Math.min(dpiX, dpiY);
+        if (effectiveDpi <= dpi * downsampleThreshold) {
+            return bitmap;
+        }
+        float scale = dpi / effectiveDpi;
+        int scaledWidth = Math.max(1, Math.round(bitmap.getWidth() * scale));
+        int scaledHeight = Math.max(1, Math.round(bitmap.getHeight() * scale));
+        return Bitmap.createScaledBitmap(bitmap, scaledWidth, scaledHeight,
+                true);
+    }
+
+    private EncodedImage encodeJpeg(final Bitmap bitmap) throws IOException {
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        if (!bitmap.compress(Bitmap.CompressFormat.JPEG,
+                Math.round(jpegQuality * 100), jpeg)) {
+            throw new IOException("bitmap could not be encoded as JPEG");
+        }
+        return JpegPassThrough.encodeJpeg(jpeg.toByteArray());
+    }
+
+    private static EncodedImage encodeBilevel(final Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        CCITTFaxG4Encoder encoder = new CCITTFaxG4Encoder(width);
+        int[] row = new int[width];
+        for (int y = 0; y < height; ++y) {
+            bitmap.getPixels(row, 0, width, 0, y, width, 1);
+            boolean[] black = new boolean[width];
+            for (int x = 0; x < width; ++x) {
+                // filtering may have produced gray edges
+                black[x] = getLuminance(row[x]) < 128;
+            }
+            encoder.encodeLine(black);
+        }
+
+        EncodedImage image = new EncodedImage(encoder.finish(),
+                COSName.CCITTFAX_DECODE, width, height, 1,
+                PDDeviceGray.INSTANCE);
+        COSDictionary decodeParms = new COSDictionary();
+        decodeParms.setInt(COSName.K, -1);
+        decodeParms.setInt(COSName.COLUMNS, width);
+        decodeParms.setInt(COSName.ROWS, height);
+        image.setDecodeParms(decodeParms);
+        return image;
+    }
+
+    private static boolean isBlackOrWhite(final int pixel) {
+        int red = Color.red(pixel);
+        int green = Color.green(pixel);
+        int blue = Color.blue(pixel);
+        if (red <= BILEVEL_TOLERANCE && green <= BILEVEL_TOLERANCE
+                && blue <= BILEVEL_TOLERANCE) {
+            return true;
+        }
+        int white = 0xff - BILEVEL_TOLERANCE;
+        return red >= white && green >= white && blue >= white;
+    }
+
+    private static int getLuminance(final int pixel) {
+        return (Color.red(pixel) * 299 + Color.green(pixel) * 587 + Color
+                .blue(pixel) * 114) / 1000;
+    }
+
+}
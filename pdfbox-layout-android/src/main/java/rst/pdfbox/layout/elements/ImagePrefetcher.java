@@ -0,0 +1,128 @@
+package rst.pdfbox.layout.elements;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import rst.pdfbox.layout.elements.render.Layout;
+import rst.pdfbox.layout.elements.render.LayoutHint;
+import rst.pdfbox.layout.elements.render.VerticalLayout;
+
+/**
+ * Prepares the images of the {@link ImageElement}s following the element
+ * currently rendered in advance, so decoding, scaling and encoding them runs
+ * on an executor while the render thread is busy with the elements before.
+ * The executor only produces the encoded data; the image XObjects are created
+ * by the render thread when drawn, since the PDF document is not thread-safe.
+ * Images already in the {@link ImageRegistry} of the document are skipped.
+ * Any failure is ignored here, since the image is then simply encoded again
+ * when drawn, which reports the failure.
+ */
+class ImagePrefetcher {
+
+    private final List<Entry<Element, LayoutHint>> elements;
+    private final ImageRegistry imageRegistry;
+    private final ExecutorService executor;
+    private final int distance;
+    private final Queue<Future<Void>> futures = new LinkedList<Future<Void>>();
+
+    private int next;
+    private PageFormat pageFormat;
+    private Layout layout = new VerticalLayout();
+
+    /**
+     * Creates a prefetcher.
+     *
+     * @param elements      the elements of the document.
+     * @param pageFormat    the page format of the document.
+     * @param imageRegistry the image registry of the document to draw to.
+     * @param executor      the executor to prepare the images with.
+     * @param distance      the number of elements to look ahead.
+     */
+    ImagePrefetcher(final List<Entry<Element, LayoutHint>> elements,
+                    final PageFormat pageFormat, final ImageRegistry imageRegistry,
+                    final ExecutorService executor, final int distance) {
+        this.elements = elements;
+        this.pageFormat = pageFormat;
+        this.imageRegistry = imageRegistry;
+        this.executor = executor;
+        this.distance = distance;
+    }
+
+    /**
+     * Starts preparing the images of the elements up to {@link #distance}
+     * elements after the given one.
+     *
+     * @param index the index of the element rendered next.
+     * @throws IOException by pdfbox
+     */
+    void advance(final int index) throws IOException {
+        while (!futures.isEmpty() && futures.peek().isDone()) {
+            futures.remove();
+        }
+        int end = Math.min(elements.size(), index + distance + 1);
+        for (; next < end; ++next) {
+            Entry<Element, LayoutHint> entry = elements.get(next);
+            Element element = entry.getKey();
+            if (element instanceof PageFormat) {
+                pageFormat = (PageFormat) element;
+            } else if (element instanceof Layout) {
+                layout = (Layout) element;
+            } else if (next > index && element instanceof ImageElement
+                    && ((ImageElement) element).isImageCreatedOnDraw()) {
+                final ImageElement imageElement = (ImageElement) element;
+                final float maxWidth = Document.getPreLayoutWidth(
+                        imageElement, entry.getValue(), layout, pageFormat);
+                futures.add(executor.submit(new Callable<Void>() {
+
+                    @Override
+                    public Void call() throws Exception {
+                        imageElement.prepareImage(imageRegistry, maxWidth);
+                        return null;
+                    }
+                }));
+            }
+        }
+    }
+
+    /**
+     * Waits for all images still being prepared, so no executor thread
+     * works on them anymore once rendering is done.
+     *
+     * @throws IOException if interrupted.
+     */
+    void finish() throws IOException {
+        try {
+            while (!futures.isEmpty()) {
+                try {
+                    futures.remove().get();
+                } catch (ExecutionException e) {
+                    // ignored, the image has been encoded again when drawn
+                } catch (CancellationException e) {
+                    // not needed anymore
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("image prefetch interrupted");
+        }
+    }
+
+    /**
+     * Cancels the preparation of all images not started yet.
+     */
+    void cancel() {
+        for (Future<Void> future : futures) {
+            future.cancel(false);
+        }
+    }
+
+}
@@ -0,0 +1,295 @@
+package rst.pdfbox.layout.elements;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Creates the images of a {@link PDDocument}, where the same image is embedded
+ * only once. Images are identified by a SHA-1 hash of their encoded bytes resp.
+ * their pixels, so the same picture used in multiple {@link ImageElement}s -
+ * like a signature, a stamp or a product photo in every row of a table - is
+ * drawn from one shared {@link PDImageXObject}:
+ * <p>
+ * <pre>
+ * ImageRegistry images = document.getImageRegistry();
+ * for (Product product : products) {
+ *     document.add(new ImageElement(images.getImage(product.getPhoto())));
+ *     ...
+ * }
+ * </pre>
+ * <p>
+ * Image elements created from a {@link ImageElement#ImageElement(Bitmap)
+ * bitmap} or {@link ImageElement#ImageElement(ImageSource) source} use the
+ * registry of the document they are drawn to on their own. If they have an
+ * {@link ImageOptimizer}, the image is shared only by elements with the same
+ * optimizer instance and drawn size, since it is encoded for that size.
+ * <p>
+ * A registry belongs to a single PDF document, since an image XObject can not
+ * be shared across documents.
+ */
+public class ImageRegistry {
+
+    private final static String HASH_ALGORITHM = "SHA-1";
+
+    private final static Map<PDDocument, WeakReference<ImageRegistry>> INSTANCES = new WeakHashMap<PDDocument, WeakReference<ImageRegistry>>();
+
+    private final PDDocument pdDocument;
+    private final Map<Object, PDImageXObject> images = new HashMap<Object, PDImageXObject>();
+
+    private ImageRegistry(final PDDocument pdDocument) {
+        this.pdDocument = pdDocument;
+    }
+
+    /**
+     * Returns the shared registry for the given document.
+     *
+     * @param pdDocument the document to create the images in.
+     * @return the registry.
+     */
+    public static ImageRegistry getInstance(final PDDocument pdDocument) {
+        synchronized (INSTANCES) {
+            WeakReference<ImageRegistry> reference = INSTANCES.get(pdDocument);
+            ImageRegistry imageRegistry = reference == null ? null
+                    : reference.get();
+            if (imageRegistry == null) {
+                imageRegistry = new ImageRegistry(pdDocument);
+                INSTANCES.put(pdDocument, new WeakReference<ImageRegistry>(
+                        imageRegistry));
+            }
+            return imageRegistry;
+        }
+    }
+
+    /**
+     * @return the document the images are created in.
+     */
+    public PDDocument getPDDocument() {
+        return pdDocument;
+    }
+
+    /**
+     * Returns the image for the given encoded image data, e.g. the content of
+     * a JPEG or PNG file. JPEG data is embedded as it is, without decoding it,
+     * as long as PDF readers support its kind of JPEG. Anything else is
+     * decoded and embedded lossless.
+     *
+     * @param data the encoded image.
+     * @return the shared image.
+     * @throws IOException by pdfbox, or if the data could not be decoded.
+     */
+    public synchronized PDImageXObject getImage(final byte[] data)
+            throws IOException {
+        ByteBuffer key = ByteBuffer.wrap(hash(data));
+
+        PDImageXObject image = images.get(key);
+        if (image == null) {
+            image = createImage(data);
+            images.put(key, image);
+        }
+        return image;
+    }
+
+    /**
+     * Returns the image for the given bitmap, which is embedded lossless.
+     * Bitmaps with the same size and pixels share the same image.
+     *
+     * @param bitmap the bitmap.
+     * @return the shared image.
+     * @throws IOException by pdfbox
+     */
+    public synchronized PDImageXObject getImage(final Bitmap bitmap)
+            throws IOException {
+        ByteBuffer key = ByteBuffer.wrap(hash(bitmap));
+
+        PDImageXObject image = images.get(key);
+        if (image == null) {
+            image = EncodedImage.encodeLossless(bitmap).createImage(
+                    pdDocument);
+            images.put(key, image);
+        }
+        return image;
+    }
+
+    /**
+     * @return the number of distinct images created so far.
+     */
+    public synchronized int size() {
+        return images.size();
+    }
+
+    /**
+     * Returns the key of an image drawn by an {@link ImageElement}. Without
+     * an optimizer, this is the same key as used by {@link #getImage(byte[])}
+     * resp. {@link #getImage(Bitmap)}, so the image is shared with those.
+     *
+     * @param hash           the hash of the encoded image resp. bitmap.
+     * @param imageOptimizer the optimizer applied, or <code>null</code>.
+     * @param width          the width the image is optimized for.
+     * @param height         the height the image is optimized for.
+     * @return the key.
+     */
+    static Object getKey(final byte[] hash,
+                         final ImageOptimizer imageOptimizer, final float width,
+                         final float height) {
+        if (imageOptimizer == null) {
+            return ByteBuffer.wrap(hash);
+        }
+        return new OptimizedImageKey(ByteBuffer.wrap(hash), imageOptimizer,
+                width, height);
+    }
+
+    /**
+     * @return <code>true</code> if an image has been created for the given
+     * key. This does not touch the document, so it may be called by any
+     * thread.
+     */
+    synchronized boolean contains(final Object key) {
+        return images.containsKey(key);
+    }
+
+    /**
+     * @return the image created for the given key, or <code>null</code>.
+     */
+    synchronized PDImageXObject getImage(final Object key) {
+        return images.get(key);
+    }
+
+    /**
+     * Creates the image for the given key from the encoded image, unless
+     * already done.
+     *
+     * @param key          the key of the image.
+     * @param encodedImage the encoded image.
+     * @return the shared image.
+     * @throws IOException by pdfbox
+     */
+    synchronized PDImageXObject getImage(final Object key,
+                                         final EncodedImage encodedImage) throws IOException {
+        PDImageXObject image = images.get(key);
+        if (image == null) {
+            image = encodedImage.createImage(pdDocument);
+            images.put(key, image);
+        }
+        return image;
+    }
+
+    private PDImageXObject createImage(final byte[] data) throws IOException {
+        if (JpegPassThrough.isJpeg(data)) {
+            try {
+                return JpegPassThrough.createFromJpeg(pdDocument, data);
+            } catch (IOException e) {
+                // not supported by the DCTDecode filter, so decode it like any
+                // other format
+            }
+        }
+        Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, data.length);
+        if (bitmap == null) {
+            throw new IOException("unsupported image format");
+        }
+        try {
+            return EncodedImage.encodeLossless(bitmap).createImage(pdDocument);
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Hashes the encoded image.
+     */
+    static byte[] hash(final byte[] data) {
+        MessageDigest digest = createDigest();
+        digest.update(data);
+        return digest.digest();
+    }
+
+    /**
+     * Hashes the size and pixels of the bitmap, row by row.
+     */
+    static byte[] hash(final Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        MessageDigest digest = createDigest();
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(width, 2) * 4);
+        buffer.putInt(width).putInt(height);
+        digest.update(buffer.array(), 0, buffer.position());
+
+        int[] row = new int[width];
+        for (int y = 0; y < height; ++y) {
+            bitmap.getPixels(row, 0, width, 0, y, width, 1);
+            buffer.clear();
+            buffer.asIntBuffer().put(row);
+            digest.update(buffer.array(), 0, width * 4);
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform has to support SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The key of an optimized image, which depends on the optimizer and the
+     * size it is optimized for.
+     */
+    private static class OptimizedImageKey {
+
+        private final ByteBuffer hash;
+        private final ImageOptimizer imageOptimizer;
+        private final float width;
+        private final float height;
+
+        private OptimizedImageKey(final ByteBuffer hash,
+                                  final ImageOptimizer imageOptimizer, final float width,
+                                  final float height) {
+            this.hash = hash;
+            this.imageOptimizer = imageOptimizer;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = hash.hashCode();
+            result = prime * result + System.identityHashCode(imageOptimizer);
+            result = prime * result + Float.floatToIntBits(width);
+            result = prime * result + Float.floatToIntBits(height);
+            return result;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof OptimizedImageKey)) {
+                return false;
+            }
+            final OptimizedImageKey other = (OptimizedImageKey) obj;
+            return hash.equals(other.hash)
+                    && imageOptimizer == other.imageOptimizer
+                    && Float.floatToIntBits(width) == Float
+                    .floatToIntBits(other.width)
+                    && Float.floatToIntBits(height) == Float
+                    .floatToIntBits(other.height);
+        }
+    }
+
+}
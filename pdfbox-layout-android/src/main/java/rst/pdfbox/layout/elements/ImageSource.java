@@ -0,0 +1,244 @@
+package rst.pdfbox.layout.elements;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Provides an encoded image (like a JPEG or PNG) which is read only on demand.
+ * Creating an {@link ImageElement#ImageElement(ImageSource) image element}
+ * from a source just reads the header for the size of the image, the pixels
+ * are decoded when the element is drawn, and released right after the image
+ * has been embedded. So a document with lots of images does not need to keep
+ * them all in memory. JPEGs are not even decoded, unless an
+ * {@link ImageOptimizer} is applied: they are embedded as they are.
+ * <p>
+ * Use the factory methods for files and buffers, or implement
+ * {@link #openStream()} to supply the image any other way:
+ * <p>
+ * <pre>
+ * ImageSource source = new ImageSource() {
+ *
+ *     public InputStream openStream() throws IOException {
+ *         return context.getAssets().open("logo.png");
+ *     }
+ * };
+ * </pre>
+ */
+public abstract class ImageSource {
+
+    private final static String JPEG_MIME_TYPE = "image/jpeg";
+
+    private int width = -1;
+    private int height = -1;
+    private String mimeType;
+
+    /**
+     * Creates a source reading the image from the given file.
+     *
+     * @param file the image file.
+     * @return the source.
+     */
+    public static ImageSource fromFile(final File file) {
+        return new ImageSource() {
+
+            @Override
+            public InputStream openStream() throws IOException {
+                return new FileInputStream(file);
+            }
+
+            @Override
+            public String toString() {
+                return "ImageSource [file=" + file + "]";
+            }
+        };
+    }
+
+    /**
+     * Creates a source reading the image from the file with the given path.
+     *
+     * @param path the path of the image file.
+     * @return the source.
+     */
+    public static ImageSource fromFile(final String path) {
+        return fromFile(new File(path));
+    }
+
+    /**
+     * Creates a source reading the image from the given buffer, from its
+     * position to its limit. The buffer is not modified, but must not be
+     * modified by others while the source is in use.
+     *
+     * @param buffer the buffer containing the encoded image.
+     * @return the source.
+     */
+    public static ImageSource fromBuffer(final ByteBuffer buffer) {
+        final ByteBuffer data = buffer.duplicate();
+        return new ImageSource() {
+
+            @Override
+            public InputStream openStream() {
+                return new ByteBufferInputStream(data.duplicate());
+            }
+
+            @Override
+            public String toString() {
+                return "ImageSource [buffer=" + data + "]";
+            }
+        };
+    }
+
+    /**
+     * Opens a stream reading the encoded image. This is called whenever the
+     * image is read, and the stream is closed after reading.
+     *
+     * @return the stream to read the image from.
+     * @throws IOException if the image could not be opened.
+     */
+    public abstract InputStream openStream() throws IOException;
+
+    /**
+     * @return the width of the image in pixels.
+     * @throws IOException if the header of the image could not be read.
+     */
+    public int getWidth() throws IOException {
+        readHeader();
+        return width;
+    }
+
+    /**
+     * @return the height of the image in pixels.
+     * @throws IOException if the header of the image could not be read.
+     */
+    public int getHeight() throws IOException {
+        readHeader();
+        return height;
+    }
+
+    /**
+     * @return the MIME type of the image, like <code>image/png</code>, or
+     * <code>null</code> if not known.
+     * @throws IOException if the header of the image could not be read.
+     */
+    public String getMimeType() throws IOException {
+        readHeader();
+        return mimeType;
+    }
+
+    /**
+     * @return <code>true</code> if the image is a JPEG.
+     * @throws IOException if the header of the image could not be read.
+     */
+    boolean isJpeg() throws IOException {
+        return JPEG_MIME_TYPE.equals(getMimeType());
+    }
+
+    /**
+     * Reads the encoded image.
+     *
+     * @return the bytes of the encoded image.
+     * @throws IOException if the image could not be read.
+     */
+    byte[] readBytes() throws IOException {
+        InputStream in = openStream();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Decodes the image.
+     *
+     * @param sampleSize decodes only every n-th pixel in each direction, where
+     *                   <code>1</code> decodes the full resolution.
+     * @return the decoded bitmap.
+     * @throws IOException if the image could not be read or decoded.
+     */
+    public Bitmap decode(final int sampleSize) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = Math.max(sampleSize, 1);
+        Bitmap bitmap = decode(options);
+        if (bitmap == null) {
+            throw new IOException("unsupported image format: " + this);
+        }
+        return bitmap;
+    }
+
+    private synchronized void readHeader() throws IOException {
+        if (width >= 0) {
+            return;
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decode(options);
+        if (options.outWidth < 0 || options.outHeight < 0) {
+            throw new IOException("unsupported image format: " + this);
+        }
+        width = options.outWidth;
+        height = options.outHeight;
+        mimeType = options.outMimeType;
+    }
+
+    private Bitmap decode(final BitmapFactory.Options options)
+            throws IOException {
+        InputStream in = openStream();
+        try {
+            return BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads the remaining bytes of a buffer.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            return buffer.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+}
@@ -0,0 +1,384 @@
+package rst.pdfbox.layout.elements;
+
+import com.tom_roush.pdfbox.cos.COSArray;
+import com.tom_roush.pdfbox.cos.COSInteger;
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.graphics.color.PDColorSpace;
+import com.tom_roush.pdfbox.pdmodel.graphics.color.PDDeviceCMYK;
+import com.tom_roush.pdfbox.pdmodel.graphics.color.PDDeviceGray;
+import com.tom_roush.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
+import com.tom_roush.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+/**
+ * Embeds JPEG and JPEG 2000 images as they are, using the
+ * <code>DCTDecode</code> resp. <code>JPXDecode</code> filter. Only the header
+ * is parsed for the size and color space of the image, the image itself is
+ * never decoded.
+ */
+final class JpegPassThrough {
+
+    private final static int JP2_SIGNATURE_BOX = 0x6a502020;
+    private final static int JP2_HEADER_BOX = 0x6a703268;
+    private final static int JP2_IMAGE_HEADER_BOX = 0x69686472;
+
+    private JpegPassThrough() {
+    }
+
+    /**
+     * Creates an image from the given JPEG data.
+     *
+     * @param pdDocument the document to create the image in.
+     * @param jpeg       the JPEG data.
+     * @return the image.
+     * @throws IOException if the header could not be parsed.
+     */
+    static PDImageXObject createFromJpeg(final PDDocument pdDocument,
+                                         final byte[] jpeg) throws IOException {
+        return encodeJpeg(jpeg).createImage(pdDocument);
+    }
+
+    /**
+     * Wraps the given JPEG data as encoded image, without touching any
+     * document, so this may be called by any thread.
+     *
+     * @param jpeg the JPEG data.
+     * @return the encoded image.
+     * @throws IOException if the header could not be parsed.
+     */
+    static EncodedImage encodeJpeg(final byte[] jpeg) throws IOException {
+        Header header = readJpegHeader(new ByteArrayInputStream(jpeg));
+        EncodedImage image = new EncodedImage(jpeg, COSName.DCT_DECODE,
+                header.width, header.height, header.bitsPerComponent,
+                getColorSpace(header));
+        image.setDecode(getDecode(header));
+        return image;
+    }
+
+    /**
+     * Creates an image from the JPEG data read from the given channel,
+     * starting at its current position. The channel is not closed.
+     *
+     * @param pdDocument the document to create the image in.
+     * @param channel    the channel to read from.
+     * @return the image.
+     * @throws IOException if the channel could not be read or the header could
+     *                     not be parsed.
+     */
+    static PDImageXObject createFromJpeg(final PDDocument pdDocument,
+                                         final FileChannel channel) throws IOException {
+        long start = channel.position();
+        Header header = readJpegHeader(new BufferedInputStream(
+                openStream(channel)));
+        channel.position(start);
+        return createFromJpeg(pdDocument, openStream(channel), header);
+    }
+
+    /**
+     * Creates an image from the given JPEG 2000 data, either in the JP2 file
+     * format or a raw code stream.
+     *
+     * @param pdDocument the document to create the image in.
+     * @param jpeg2000   the JPEG 2000 data.
+     * @return the image.
+     * @throws IOException if the header could not be parsed.
+     */
+    static PDImageXObject createFromJpeg2000(final PDDocument pdDocument,
+                                             final byte[] jpeg2000) throws IOException {
+        Header header = readJpeg2000Header(new ByteArrayInputStream(jpeg2000));
+        return createFromJpeg2000(pdDocument,
+                new ByteArrayInputStream(jpeg2000), header);
+    }
+
+    /**
+     * Creates an image from the JPEG 2000 data read from the given channel,
+     * starting at its current position. The channel is not closed.
+     *
+     * @param pdDocument the document to create the image in.
+     * @param channel    the channel to read from.
+     * @return the image.
+     * @throws IOException if the channel could not be read or the header could
+     *                     not be parsed.
+     */
+    static PDImageXObject createFromJpeg2000(final PDDocument pdDocument,
+                                             final FileChannel channel) throws IOException {
+        long start = channel.position();
+        Header header = readJpeg2000Header(new BufferedInputStream(
+                openStream(channel)));
+        channel.position(start);
+        return createFromJpeg2000(pdDocument, openStream(channel), header);
+    }
+
+    /**
+     * @return <code>true</code> if the given data starts like a JPEG.
+     */
+    static boolean isJpeg(final byte[] data) {
+        return data.length > 2 && (data[0] & 0xff) == 0xff
+                && (data[1] & 0xff) == 0xd8;
+    }
+
+    private static PDImageXObject createFromJpeg(final PDDocument pdDocument,
+                                                 final InputStream jpeg, final Header header) throws IOException {
+        PDImageXObject image = new PDImageXObject(pdDocument, jpeg,
+                COSName.DCT_DECODE, header.width, header.height,
+                header.bitsPerComponent, getColorSpace(header));
+        COSArray decode = getDecode(header);
+        if (decode != null) {
+            image.getCOSObject().setItem(COSName.DECODE, decode);
+        }
+        return image;
+    }
+
+    private static PDColorSpace getColorSpace(final Header header)
+            throws IOException {
+        switch (header.components) {
+            case 1:
+                return PDDeviceGray.INSTANCE;
+            case 3:
+                return PDDeviceRGB.INSTANCE;
+            case 4:
+                return PDDeviceCMYK.INSTANCE;
+            default:
+                throw new IOException("unsupported number of color components: "
+                        + header.components);
+        }
+    }
+
+    /**
+     * @return the decode array, or <code>null</code> if the default applies.
+     */
+    private static COSArray getDecode(final Header header) {
+        if (header.components != 4 || !header.adobe) {
+            return null;
+        }
+        // Adobe applications write CMYK JPEGs inverted
+        COSArray decode = new COSArray();
+        for (int index = 0; index < 4; ++index) {
+            decode.add(COSInteger.ONE);
+            decode.add(COSInteger.ZERO);
+        }
+        return decode;
+    }
+
+    private static PDImageXObject createFromJpeg2000(
+            final PDDocument pdDocument, final InputStream jpeg2000,
+            final Header header) throws IOException {
+        PDImageXObject image = new PDImageXObject(pdDocument, jpeg2000,
+                COSName.JPX_DECODE, header.width, header.height,
+                header.bitsPerComponent, null);
+        // color space and bit depth are taken from the JPEG 2000 data
+        image.getCOSObject().removeItem(COSName.COLORSPACE);
+        image.getCOSObject().removeItem(COSName.BITS_PER_COMPONENT);
+        return image;
+    }
+
+    /**
+     * Reads the markers up to the start of frame.
+     */
+    private static Header readJpegHeader(final InputStream in)
+            throws IOException {
+        if (readByte(in) != 0xff || readByte(in) != 0xd8) {
+            throw new IOException("not a JPEG image");
+        }
+        Header header = new Header();
+        while (true) {
+            if (readByte(in) != 0xff) {
+                throw new IOException("invalid JPEG marker");
+            }
+            int marker = readByte(in);
+            while (marker == 0xff) {
+                // fill bytes
+                marker = readByte(in);
+            }
+            if (marker == 0x01 || marker >= 0xd0 && marker <= 0xd8) {
+                // markers without a segment
+                continue;
+            }
+            if (marker == 0xd9 || marker == 0xda) {
+                throw new IOException("no start of frame in JPEG image");
+            }
+            int length = readUnsignedShort(in) - 2;
+            if (isStartOfFrame(marker)) {
+                header.bitsPerComponent = readByte(in);
+                header.height = readUnsignedShort(in);
+                header.width = readUnsignedShort(in);
+                header.components = readByte(in);
+                if (!isSupportedFrame(marker, header)) {
+                    throw new IOException(String.format(
+                            "unsupported JPEG frame SOF%d with %d bit and %d components",
+                            marker - 0xc0, header.bitsPerComponent,
+                            header.components));
+                }
+                if (header.height == 0) {
+                    throw new IOException(
+                            "JPEG images defining the height later are not supported");
+                }
+                return header;
+            }
+            if (marker == 0xee && length >= 5) {
+                byte[] identifier = readFully(in, 5);
+                header.adobe = new String(identifier, "ISO-8859-1")
+                        .equals("Adobe");
+                length -= 5;
+            }
+            skipFully(in, length);
+        }
+    }
+
+    private static boolean isStartOfFrame(final int marker) {
+        // C4 (huffman tables), C8 (reserved) and CC (arithmetic coding
+        // conditioning) share the range
+        return marker >= 0xc0 && marker <= 0xcf && marker != 0xc4
+                && marker != 0xc8 && marker != 0xcc;
+    }
+
+    /**
+     * Indicates if PDF readers are able to decode the frame: baseline,
+     * extended sequential or progressive Huffman coding with 8 bit gray, RGB
+     * or CMYK samples. Anything else, like lossless, hierarchical, arithmetic
+     * coded or 12 bit JPEGs, is not passed through.
+     */
+    private static boolean isSupportedFrame(final int marker,
+                                            final Header header) {
+        return marker <= 0xc2 && header.bitsPerComponent == 8
+                && (header.components == 1 || header.components == 3
+                || header.components == 4);
+    }
+
+    /**
+     * Reads the image header box of the JP2 format, or the image and tile
+     * size marker of a raw code stream.
+     */
+    private static Header readJpeg2000Header(final InputStream in)
+            throws IOException {
+        int first = readInt(in);
+        if (first == 0xff4fff51) {
+            return readCodeStreamHeader(in);
+        }
+        if (first != 12 || readInt(in) != JP2_SIGNATURE_BOX) {
+            throw new IOException("not a JPEG 2000 image");
+        }
+        skipFully(in, 4);
+        while (true) {
+            long length = readInt(in) & 0xffffffffL;
+            int type = readInt(in);
+            long contentLength = length - 8;
+            if (length == 1) {
+                contentLength = readLong(in) - 16;
+            }
+            if (type == JP2_HEADER_BOX) {
+                // a super box, continue with the contained boxes
+                continue;
+            }
+            if (type == JP2_IMAGE_HEADER_BOX) {
+                Header header = new Header();
+                header.height = readInt(in);
+                header.width = readInt(in);
+                header.components = readUnsignedShort(in);
+                header.bitsPerComponent = (readByte(in) & 0x7f) + 1;
+                return header;
+            }
+            if (length == 0) {
+                // the last box
+                break;
+            }
+            skipFully(in, contentLength);
+        }
+        throw new IOException("no image header in JPEG 2000 image");
+    }
+
+    private static Header readCodeStreamHeader(final InputStream in)
+            throws IOException {
+        // Lsiz, Rsiz
+        skipFully(in, 4);
+        int width = readInt(in);
+        int height = readInt(in);
+        int offsetX = readInt(in);
+        int offsetY = readInt(in);
+        // tile size and offset
+        skipFully(in, 16);
+        Header header = new Header();
+        header.width = width - offsetX;
+        header.height = height - offsetY;
+        header.components = readUnsignedShort(in);
+        header.bitsPerComponent = (readByte(in) & 0x7f) + 1;
+        return header;
+    }
+
+    /**
+     * Opens a stream on the channel which does not close it.
+     */
+    private static InputStream openStream(final FileChannel channel) {
+        return new FilterInputStream(Channels.newInputStream(channel)) {
+
+            @Override
+            public void close() {
+                // the channel is closed by the caller
+            }
+        };
+    }
+
+    private static int readByte(final InputStream in) throws IOException {
+        int value = in.read();
+        if (value < 0) {
+            throw new EOFException("unexpected end of image");
+        }
+        return value;
+    }
+
+    private static int readUnsignedShort(final InputStream in)
+            throws IOException {
+        return readByte(in) << 8 | readByte(in);
+    }
+
+    private static int readInt(final InputStream in) throws IOException {
+        return readUnsignedShort(in) << 16 | readUnsignedShort(in);
+    }
+
+    private static long readLong(final InputStream in) throws IOException {
+        return (readInt(in) & 0xffffffffL) << 32 | readInt(in) & 0xffffffffL;
+    }
+
+    private static byte[] readFully(final InputStream in, final int length)
+            throws IOException {
+        byte[] bytes = new byte[length];
+        for (int index = 0; index < length; ++index) {
+            bytes[index] = (byte) readByte(in);
+        }
+        return bytes;
+    }
+
+    private static void skipFully(final InputStream in, long length)
+            throws IOException {
+        while (length > 0) {
+            long skipped = in.skip(length);
+            if (skipped <= 0) {
+                readByte(in);
+                skipped = 1;
+            }
+            length -= skipped;
+        }
+    }
+
+    /**
+     * The properties of an image read from its header.
+     */
+    private static class Header {
+
+        private int width;
+        private int height;
+        private int components;
+        private int bitsPerComponent;
+        private boolean adobe;
+    }
+
+}
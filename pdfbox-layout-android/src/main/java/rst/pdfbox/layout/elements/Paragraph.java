@@ -83,9 +83,4 @@ public class Paragraph extends TextFlow implements Drawable, Element,
     protected Paragraph createInstance() {
         return new Paragraph();
     }
-
-    @Override
-    public void drawText(PDPageContentStream contentStream, Position upperLeft, Alignment alignment, DrawListener drawListener) throws IOException {
-
-    }
 }
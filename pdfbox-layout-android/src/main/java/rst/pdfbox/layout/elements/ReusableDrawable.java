@@ -0,0 +1,188 @@
+package rst.pdfbox.layout.elements;
+
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.PDPageContentStream;
+import com.tom_roush.pdfbox.pdmodel.PDResources;
+import com.tom_roush.pdfbox.pdmodel.common.PDRectangle;
+import com.tom_roush.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import com.tom_roush.pdfbox.pdmodel.interactive.annotation.PDAppearanceStream;
+import com.tom_roush.pdfbox.util.Matrix;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import rst.pdfbox.layout.text.DrawListener;
+import rst.pdfbox.layout.text.Position;
+
+/**
+ * Wraps a drawable that is drawn over and over again, like a letterhead, a
+ * logo or a watermark. On the first draw into a PDF document, the drawable is
+ * recorded into a form XObject, and every draw just places that form using a
+ * single <code>Do</code> operator. So the document contains the operators of
+ * the drawable only once, no matter on how many pages it is drawn:
+ * <p>
+ * <pre>
+ * final ReusableDrawable letterhead = new ReusableDrawable(frame);
+ * document.addRenderListener(new RenderListener() {
+ *
+ *     public void beforePage(RenderContext renderContext) throws IOException {
+ *         letterhead.draw(renderContext.getPdDocument(),
+ *                 renderContext.getContentStream(), upperLeft, renderContext);
+ *     }
+ *     ...
+ * });
+ * </pre>
+ * <p>
+ * The drawable is recorded with its {@link #getWidth() width} and
+ * {@link #getHeight() height} as bounding box, anything drawn outside is
+ * clipped. Calls of the {@link DrawListener} made while recording are replayed
+ * on every draw, relative to the position drawn at, so annotations like
+ * hyperlinks still work on every page. The drawable must not change once it
+ * has been recorded.
+ */
+public class ReusableDrawable implements Drawable, Element {
+
+    private final Drawable drawable;
+    private final Map<PDDocument, Recording> recordings = new WeakHashMap<PDDocument, Recording>();
+
+    /**
+     * Creates a reusable drawable.
+     *
+     * @param drawable the drawable to record.
+     */
+    public ReusableDrawable(final Drawable drawable) {
+        this.drawable = drawable;
+    }
+
+    /**
+     * @return the wrapped drawable.
+     */
+    public Drawable getDrawable() {
+        return drawable;
+    }
+
+    @Override
+    public float getWidth() throws IOException {
+        return drawable.getWidth();
+    }
+
+    @Override
+    public float getHeight() throws IOException {
+        return drawable.getHeight();
+    }
+
+    @Override
+    public Position getAbsolutePosition() throws IOException {
+        return drawable.getAbsolutePosition();
+    }
+
+    @Override
+    public void draw(PDDocument pdDocument, PDPageContentStream contentStream,
+                     Position upperLeft, DrawListener drawListener) throws IOException {
+        Recording recording = getRecording(pdDocument);
+
+        contentStream.saveGraphicsState();
+        contentStream.transform(new Matrix(1f, 0f, 0f, 1f, upperLeft.getX(),
+                upperLeft.getY() - recording.height));
+        contentStream.drawForm(recording.form);
+        contentStream.restoreGraphicsState();
+
+        if (drawListener != null) {
+            recording.replay(drawListener, upperLeft);
+        }
+    }
+
+    @Override
+    public Drawable removeLeadingEmptyVerticalSpace() throws IOException {
+        return this;
+    }
+
+    /**
+     * Returns the recording for the given document, recording the drawable
+     * if not done yet.
+     *
+     * @param pdDocument the document to draw to.
+     * @return the recording.
+     * @throws IOException by pdfbox
+     */
+    protected Recording getRecording(final PDDocument pdDocument)
+            throws IOException {
+        synchronized (recordings) {
+            Recording recording = recordings.get(pdDocument);
+            if (recording == null) {
+                recording = record(pdDocument);
+                recordings.put(pdDocument, recording);
+            }
+            return recording;
+        }
+    }
+
+    private Recording record(final PDDocument pdDocument) throws IOException {
+        float width = drawable.getWidth();
+        float height = drawable.getHeight();
+        // pdfbox-android can only write the content of a form through
+        // PDPageContentStream(PDDocument, PDAppearanceStream, OutputStream).
+        // An appearance stream is a plain form XObject anyway, so it is used
+        // like any PDFormXObject.
+        PDAppearanceStream form = new PDAppearanceStream(pdDocument);
+        form.setResources(new PDResources());
+        form.setBBox(new PDRectangle(width, height));
+
+        Recording recording = new Recording(form, height);
+        PDPageContentStream formStream = new PDPageContentStream(pdDocument,
+                form, form.getStream().createOutputStream(COSName.FLATE_DECODE));
+        try {
+            drawable.draw(pdDocument, formStream, new Position(0, height),
+                    recording);
+        } finally {
+            formStream.close();
+        }
+        return recording;
+    }
+
+    @Override
+    public String toString() {
+        return "ReusableDrawable [drawable=" + drawable + "]";
+    }
+
+    /**
+     * The form recorded for a document, and the draw listener calls made while
+     * recording.
+     */
+    protected static class Recording implements DrawListener {
+
+        private final PDFormXObject form;
+        private final float height;
+        private final List<Object> drawnObjects = new ArrayList<Object>();
+        private final List<float[]> drawnAreas = new ArrayList<float[]>();
+
+        private Recording(final PDFormXObject form, final float height) {
+            this.form = form;
+            this.height = height;
+        }
+
+        @Override
+        public void drawn(Object drawnObject, Position upperLeft, float width,
+                          float height) {
+            drawnObjects.add(drawnObject);
+            drawnAreas.add(new float[]{upperLeft.getX(), upperLeft.getY(),
+                    width, height});
+        }
+
+        private void replay(final DrawListener drawListener,
+                            final Position upperLeft) {
+            float offsetX = upperLeft.getX();
+            float offsetY = upperLeft.getY() - height;
+            for (int index = 0; index < drawnObjects.size(); ++index) {
+                float[] area = drawnAreas.get(index);
+                drawListener.drawn(drawnObjects.get(index), new Position(
+                        area[0] + offsetX, area[1] + offsetY), area[2], area[3]);
+            }
+        }
+    }
+
+}
@@ -36,9 +36,8 @@ public class ColumnLayout extends VerticalLayout {
     }
 
     @Override
-    protected float getTargetWidth(final RenderContext renderContext) {
-        return (renderContext.getWidth() - ((columnCount - 1) * columnSpacing))
-                / columnCount;
+    public float getTargetWidth(final float width) {
+        return (width - ((columnCount - 1) * columnSpacing)) / columnCount;
     }
 
     /**
@@ -34,6 +34,7 @@ public class RenderContext implements Renderer, Closeable, DrawContext, DrawList
     private PDPage page;
     private int pageIndex = 0;
     private PDPageContentStream contentStream;
+    private boolean contentClipped;
     private Position currentPosition;
     private Position markedPosition;
     private Position maxPositionOnPage;
@@ -288,6 +289,45 @@ public class RenderContext implements Renderer, Closeable, DrawContext, DrawList
         return contentStream;
     }
 
+    /**
+     * Clips the content stream to the area between the top and bottom margin
+     * of the page, unless it is already clipped. The clip stays in effect
+     * until {@link #unclipContent()} is called or the page is closed, so
+     * consecutive drawables - also in multiple columns - share one clip path.
+     *
+     * @throws IOException by pdfbox
+     */
+    public void clipContent() throws IOException {
+        if (!contentClipped) {
+            contentStream.saveGraphicsState();
+            contentStream.addRect(0, getPageFormat().getMarginBottom(),
+                    getPageWidth(), getHeight());
+            contentStream.clip();
+            contentClipped = true;
+        }
+    }
+
+    /**
+     * Removes the clip installed by {@link #clipContent()} (if any), in order
+     * to draw outside the content area, e.g. into the margins.
+     *
+     * @throws IOException by pdfbox
+     */
+    public void unclipContent() throws IOException {
+        if (contentClipped) {
+            contentStream.restoreGraphicsState();
+            contentClipped = false;
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the content stream is currently clipped to
+     * the content area.
+     */
+    public boolean isContentClipped() {
+        return contentClipped;
+    }
+
     /**
      * @return the current page index (starting from 0).
      */
@@ -399,6 +439,7 @@ public class RenderContext implements Renderer, Closeable, DrawContext, DrawList
      */
     public boolean closePage() throws IOException {
         if (contentStream != null) {
+            unclipContent();
 
             annotationDrawListener.afterPage(this);
             document.afterPage(this);
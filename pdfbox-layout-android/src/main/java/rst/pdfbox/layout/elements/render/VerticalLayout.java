@@ -10,7 +10,6 @@ import rst.pdfbox.layout.elements.Dividable;
 import rst.pdfbox.layout.elements.Dividable.Divided;
 import rst.pdfbox.layout.elements.Drawable;
 import rst.pdfbox.layout.elements.Element;
-import rst.pdfbox.layout.elements.PageFormat;
 import rst.pdfbox.layout.elements.VerticalSpacer;
 import rst.pdfbox.layout.text.Alignment;
 import rst.pdfbox.layout.text.Position;
@@ -63,10 +62,18 @@ public class VerticalLayout implements Layout {
      * @return the target width to draw to.
      */
     protected float getTargetWidth(final RenderContext renderContext) {
-        float targetWidth = renderContext.getWidth();
+        float targetWidth = getTargetWidth(renderContext.getWidth());
         return targetWidth;
     }
 
+    /**
+     * @param width the width between the page margins.
+     * @return the target width to draw to.
+     */
+    public float getTargetWidth(final float width) {
+        return width;
+    }
+
     @Override
     public boolean render(RenderContext renderContext, Element element,
                           LayoutHint layoutHint) throws IOException {
@@ -93,7 +100,8 @@ public class VerticalLayout implements Layout {
     }
 
     /**
-     * Draws at the given position, ignoring all layouting rules.
+     * Draws at the given position, ignoring all layouting rules. The drawable
+     * is not clipped to the content area, so it may draw into the margins.
      *
      * @param renderContext the context providing all rendering state.
      * @param drawable      the drawable to draw.
@@ -104,6 +112,7 @@ public class VerticalLayout implements Layout {
     protected void renderAbsolute(final RenderContext renderContext,
                                   Drawable drawable, final LayoutHint layoutHint,
                                   final Position position) throws IOException {
+        renderContext.unclipContent();
         drawable.draw(renderContext.getPdDocument(),
                 renderContext.getContentStream(), position, renderContext);
     }
@@ -147,7 +156,9 @@ public class VerticalLayout implements Layout {
      * divides it onto multiple pages if necessary. Actual drawing is delegated
      * to
      * {@link #drawReletivePartAndMovePosition(RenderContext, Drawable, LayoutHint, boolean)}
-     * .
+     * . Text is wrapped only once: the parts of a divided paragraph are slices
+     * of its {@link rst.pdfbox.layout.text.TextLayout layout}, so each page
+     * just consumes the next range of the wrapped lines.
      *
      * @param renderContext the context providing all rendering state.
      * @param drawable      the drawable to draw.
@@ -214,7 +225,11 @@ public class VerticalLayout implements Layout {
      * {@link RenderContext#getCurrentPosition()} and - depending on flag
      * <code>movePosition</code> - moves to the new Y position. Any left or
      * right margin is taken into account to calculate the position and
-     * alignment.
+     * alignment. The drawable is clipped to the content area of the page,
+     * where the clip is installed just once per page by
+     * {@link RenderContext#clipContent()}. Its graphics state is still
+     * saved and restored, so any state changes do not affect the following
+     * drawables.
      *
      * @param renderContext the context providing all rendering state.
      * @param drawable      the drawable to draw.
@@ -228,7 +243,6 @@ public class VerticalLayout implements Layout {
             final LayoutHint layoutHint, final boolean movePosition)
             throws IOException {
         PDPageContentStream contentStream = renderContext.getContentStream();
-        PageFormat pageFormat = renderContext.getPageFormat();
         float offsetX = 0;
         if (layoutHint instanceof VerticalLayoutHint) {
             VerticalLayoutHint verticalLayoutHint = (VerticalLayoutHint) layoutHint;
@@ -249,10 +263,8 @@ public class VerticalLayout implements Layout {
             }
         }
 
+        renderContext.clipContent();
         contentStream.saveGraphicsState();
-        contentStream.addRect(0, pageFormat.getMarginBottom(), renderContext.getPageWidth(),
-                renderContext.getHeight());
-        contentStream.clip();
 
         drawable.draw(renderContext.getPdDocument(), contentStream,
                 renderContext.getCurrentPosition().add(offsetX, 0), renderContext);
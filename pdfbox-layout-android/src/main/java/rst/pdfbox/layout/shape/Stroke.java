@@ -4,6 +4,8 @@ import com.tom_roush.pdfbox.pdmodel.PDPageContentStream;
 
 import java.io.IOException;
 
+import rst.pdfbox.layout.util.TrackingContentStream;
+
 /**
  * This is a container for all information needed to perform a stroke.
  */
@@ -184,6 +186,28 @@ public class Stroke {
         contentStream.setLineWidth(getLineWidth());
     }
 
+    /**
+     * Applies this stroke to the given stream, where only the values not
+     * already in effect are written.
+     *
+     * @param stream the stream to apply this stroke to.
+     * @throws IOException by PDFBox.
+     */
+    public void applyTo(final TrackingContentStream stream)
+            throws IOException {
+        if (getCapStyle() != null) {
+            stream.setLineCapStyle(getCapStyle().value());
+        }
+        if (getJoinStyle() != null) {
+            stream.setLineJoinStyle(getJoinStyle().value());
+        }
+        if (getDashPattern() != null) {
+            stream.setLineDashPattern(getDashPattern().getPattern(),
+                    getDashPattern().getPhase());
+        }
+        stream.setLineWidth(getLineWidth());
+    }
+
     /**
      * Creates a stroke builder providing a fluent interface for creating a stroke.
      *
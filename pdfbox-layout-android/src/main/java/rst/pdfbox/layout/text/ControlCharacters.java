@@ -82,6 +82,11 @@ public class ControlCharacters {
      * The factory for color control characters.
      */
     public static ControlCharacterFactory COLOR_FACTORY = new ColorControlCharacterFactory();
+    /**
+     * The factory for placeholder control characters, only used when
+     * compiling a {@link MarkupTemplate}.
+     */
+    public static ControlCharacterFactory PLACEHOLDER_FACTORY = new PlaceholderControlCharacterFactory();
 
     /**
      * The factory for metrics control characters.
@@ -147,6 +152,27 @@ public class ControlCharacters {
         }
     }
 
+    /**
+     * A <code>{$name}</code> marks a placeholder in a {@link MarkupTemplate},
+     * which is replaced by the value bound to <code>name</code>. It can be
+     * escaped with a backslash ('\').
+     */
+    public static class PlaceholderControlCharacter extends ControlCharacter {
+        private final String name;
+
+        protected PlaceholderControlCharacter(final String name) {
+            super("PLACEHOLDER", PlaceholderControlCharacterFactory.TO_ESCAPE);
+            this.name = name;
+        }
+
+        /**
+         * @return the name of the parameter.
+         */
+        public String getName() {
+            return name;
+        }
+    }
+
     private static class StaticControlCharacterFactory implements
             ControlCharacterFactory {
 
@@ -211,6 +237,35 @@ public class ControlCharacters {
 
     }
 
+    private static class PlaceholderControlCharacterFactory implements ControlCharacterFactory {
+
+        private final static Pattern PATTERN = Pattern
+                .compile("(?<!\\\\)(\\\\\\\\)*\\{\\$(\\w+)\\}");
+
+        private final static String TO_ESCAPE = "{";
+
+        @Override
+        public ControlCharacter createControlCharacter(String text, Matcher matcher, final List<CharSequence> charactersSoFar) {
+            return new PlaceholderControlCharacter(matcher.group(2));
+        }
+
+        @Override
+        public Pattern getPattern() {
+            return PATTERN;
+        }
+
+        @Override
+        public String unescape(String text) {
+            return text.replaceAll("\\\\" + Pattern.quote(TO_ESCAPE), TO_ESCAPE);
+        }
+
+        @Override
+        public boolean patternMatchesBeginOfLine() {
+            return false;
+        }
+
+    }
+
     public static class MetricsControlCharacter extends ControlCharacter {
         private float fontScale;
         private float baselineOffsetScale;
@@ -13,8 +13,8 @@ import java.io.IOException;
  */
 public class ControlFragment implements TextFragment {
 
-    protected final static FontDescriptor DEFAULT_FONT_DESCRIPTOR = new FontDescriptor(
-            PDType1Font.HELVETICA, 11);
+    protected final static FontDescriptor DEFAULT_FONT_DESCRIPTOR = FontDescriptor
+            .getInstance(PDType1Font.HELVETICA, 11);
 
     private String name;
     private String text;
@@ -44,7 +44,7 @@ public class ControlFragment implements TextFragment {
 
     @Override
     public float getHeight() throws IOException {
-        return getFontDescriptor() == null ? 0 : getFontDescriptor().getSize();
+        return getFontDescriptor() == null ? 0 : getFontDescriptor().getLineHeight();
     }
 
     @Override
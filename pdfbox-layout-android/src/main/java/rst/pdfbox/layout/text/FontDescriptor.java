@@ -1,12 +1,23 @@
 package rst.pdfbox.layout.text;
 
 import com.tom_roush.pdfbox.pdmodel.font.PDFont;
+import com.tom_roush.pdfbox.pdmodel.font.PDFontDescriptor;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
- * Container for a Font and size.
+ * Container for a Font and size. Use {@link #getInstance(PDFont, float)} to
+ * obtain a shared instance per font and size, which also caches the metrics
+ * needed for layouting like ascent, descent, em and space width.
  */
 public class FontDescriptor {
 
+    private final static Map<PDFont, Map<Float, WeakReference<FontDescriptor>>> INSTANCES = new WeakHashMap<PDFont, Map<Float, WeakReference<FontDescriptor>>>();
+
     /**
      * the associated font.
      */
@@ -18,7 +29,36 @@ public class FontDescriptor {
     private final float size;
 
     /**
-     * Creates the descriptor the the given font and size.
+     * the glyph widths of the font.
+     */
+    private final GlyphWidths glyphWidths;
+
+    /**
+     * the scaled ascent of the font.
+     */
+    private final float ascent;
+
+    /**
+     * the scaled descent of the font.
+     */
+    private final float descent;
+
+    /**
+     * the scaled width of <code>M</code>, or <code>NaN</code> if it could not
+     * be measured.
+     */
+    private final float emWidth;
+
+    /**
+     * the scaled width of a blank, or <code>NaN</code> if it could not be
+     * measured.
+     */
+    private final float spaceWidth;
+
+    /**
+     * Creates the descriptor the the given font and size. Prefer
+     * {@link #getInstance(PDFont, float)} in order to share the descriptor and
+     * its metrics.
      *
      * @param font the font.
      * @param size the size.
@@ -26,6 +66,48 @@ public class FontDescriptor {
     public FontDescriptor(final PDFont font, final float size) {
         this.font = font;
         this.size = size;
+        this.glyphWidths = font == null ? null : GlyphWidths.getInstance(font);
+
+        PDFontDescriptor pdFontDescriptor = font == null ? null : font
+                .getFontDescriptor();
+        if (pdFontDescriptor != null) {
+            this.ascent = size * pdFontDescriptor.getAscent() / 1000;
+            this.descent = size * pdFontDescriptor.getDescent() / 1000;
+        } else {
+            this.ascent = 0;
+            this.descent = 0;
+        }
+
+        this.emWidth = measure('M');
+        this.spaceWidth = measure(' ');
+    }
+
+    /**
+     * Returns the shared descriptor for the given font and size.
+     *
+     * @param font the font.
+     * @param size the size.
+     * @return the descriptor.
+     */
+    public static FontDescriptor getInstance(final PDFont font,
+                                             final float size) {
+        synchronized (INSTANCES) {
+            Map<Float, WeakReference<FontDescriptor>> sizes = INSTANCES
+                    .get(font);
+            if (sizes == null) {
+                sizes = new HashMap<Float, WeakReference<FontDescriptor>>();
+                INSTANCES.put(font, sizes);
+            }
+            WeakReference<FontDescriptor> reference = sizes.get(size);
+            FontDescriptor fontDescriptor = reference == null ? null
+                    : reference.get();
+            if (fontDescriptor == null) {
+                fontDescriptor = new FontDescriptor(font, size);
+                sizes.put(size, new WeakReference<FontDescriptor>(
+                        fontDescriptor));
+            }
+            return fontDescriptor;
+        }
     }
 
     /**
@@ -42,6 +124,108 @@ public class FontDescriptor {
         return size;
     }
 
+    /**
+     * @return the height of a line in this font, which is the font size.
+     */
+    public float getLineHeight() {
+        return size;
+    }
+
+    /**
+     * @return the ascent of the font scaled to the size.
+     */
+    public float getAscent() {
+        return ascent;
+    }
+
+    /**
+     * @return the descent of the font scaled to the size, usually a negative
+     * value.
+     */
+    public float getDescent() {
+        return descent;
+    }
+
+    /**
+     * @return the width of the character <code>M</code>.
+     * @throws IOException by pdfbox
+     */
+    public float getEmWidth() throws IOException {
+        if (Float.isNaN(emWidth)) {
+            // measure again in order to report the failure
+            return getStringWidth("M", 0, 1);
+        }
+        return emWidth;
+    }
+
+    /**
+     * @return the width of a blank.
+     * @throws IOException by pdfbox
+     */
+    public float getSpaceWidth() throws IOException {
+        if (Float.isNaN(spaceWidth)) {
+            // measure again in order to report the failure
+            return getStringWidth(" ", 0, 1);
+        }
+        return spaceWidth;
+    }
+
+    /**
+     * Returns the width of the given range of the text in this font and size.
+     *
+     * @param text  the text to measure.
+     * @param start the index of the first character to measure.
+     * @param end   the index after the last character to measure.
+     * @return the width of the text range.
+     * @throws IOException by pdfbox
+     */
+    public float getStringWidth(final CharSequence text, final int start,
+                                final int end) throws IOException {
+        return size * glyphWidths.getStringWidth(font, text, start, end)
+                / 1000;
+    }
+
+    /**
+     * Returns the number of characters of the given text range that fit into
+     * the given width. The range is only measured up to the first character
+     * exceeding the width. Surrogate pairs are never split.
+     *
+     * @param text     the text to measure.
+     * @param start    the index of the first character to measure.
+     * @param end      the index after the last character to measure.
+     * @param maxWidth the maximum width to obey.
+     * @return the number of characters (starting at <code>start</code>) that
+     * fit into the given width.
+     * @throws IOException by pdfbox
+     */
+    public int getFittingCharacters(final CharSequence text, final int start,
+                                    final int end, final float maxWidth) throws IOException {
+        return glyphWidths.getFittingCharacters(font, text, start, end,
+                maxWidth * 1000 / size);
+    }
+
+    /**
+     * Measures the given character while constructing, where failures can not
+     * be reported. Fonts like ZapfDingbats or subsets do not have every
+     * character, but are still usable for the ones they have.
+     *
+     * @return the scaled width, or <code>NaN</code> if it could not be
+     * measured.
+     */
+    private float measure(final char c) {
+        if (glyphWidths == null) {
+            return Float.NaN;
+        }
+        try {
+            return size * glyphWidths.getWidth(font, c) / 1000;
+        } catch (IOException e) {
+            return Float.NaN;
+        } catch (IllegalArgumentException e) {
+            // no glyph for the character
+            return Float.NaN;
+        }
+    }
+
     @Override
     public String toString() {
         return "FontDescriptor [font=" + font + ", size=" + size + "]";
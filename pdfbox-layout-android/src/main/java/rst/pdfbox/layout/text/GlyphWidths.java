@@ -0,0 +1,189 @@
+package rst.pdfbox.layout.text;
+
+import com.tom_roush.pdfbox.pdmodel.font.PDFont;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Caches the glyph widths of a font per code point, so measuring text does not
+ * need to encode and look up every glyph again on each call. Widths of the
+ * basic multilingual plane are held in lazily allocated pages of primitive
+ * <code>float</code>s, any supplementary code points in a fallback map.
+ * <p>
+ * Instances are obtained per font by {@link #getInstance(PDFont)}, and are
+ * filled lazily on first use of a code point. They may be shared across
+ * threads: lookups of already measured code points are lock-free, while the
+ * (not thread-safe) font itself is only asked under a lock. The table does not
+ * hold a reference to its font, so fonts - and the documents they belong to -
+ * may be garbage collected as usual.
+ */
+public final class GlyphWidths {
+
+    private final static int PAGE_BITS = 8;
+    private final static int PAGE_SIZE = 1 << PAGE_BITS;
+    private final static int PAGE_MASK = PAGE_SIZE - 1;
+    private final static int PAGE_COUNT = (Character.MAX_VALUE + 1) >>> PAGE_BITS;
+
+    private final static Map<PDFont, GlyphWidths> INSTANCES = Collections
+            .synchronizedMap(new WeakHashMap<PDFont, GlyphWidths>());
+
+    private final AtomicReferenceArray<float[]> pages = new AtomicReferenceArray<float[]>(
+            PAGE_COUNT);
+    private final Map<Integer, Float> supplementary = new ConcurrentHashMap<Integer, Float>();
+
+    private GlyphWidths() {
+    }
+
+    /**
+     * Returns the width table of the given font.
+     *
+     * @param font the font.
+     * @return the (shared) width table of the font.
+     */
+    public static GlyphWidths getInstance(final PDFont font) {
+        synchronized (INSTANCES) {
+            GlyphWidths glyphWidths = INSTANCES.get(font);
+            if (glyphWidths == null) {
+                glyphWidths = new GlyphWidths();
+                INSTANCES.put(font, glyphWidths);
+            }
+            return glyphWidths;
+        }
+    }
+
+    /**
+     * Returns the width of the given code point in glyph space units (1/1000
+     * of the font size).
+     *
+     * @param font      the font this table belongs to.
+     * @param codePoint the code point to measure.
+     * @return the width of the code point.
+     * @throws IOException by pdfbox
+     */
+    public float getWidth(final PDFont font, final int codePoint)
+            throws IOException {
+        if (codePoint > Character.MAX_VALUE) {
+            Float width = supplementary.get(codePoint);
+            if (width == null) {
+                width = measure(font, codePoint);
+                supplementary.put(codePoint, width);
+            }
+            return width;
+        }
+
+        float[] page = getPage(codePoint >>> PAGE_BITS);
+        float width = page[codePoint & PAGE_MASK];
+        if (Float.isNaN(width)) {
+            width = measure(font, codePoint);
+            page[codePoint & PAGE_MASK] = width;
+        }
+        return width;
+    }
+
+    /**
+     * Returns the width of the given text in glyph space units (1/1000 of the
+     * font size).
+     *
+     * @param font the font this table belongs to.
+     * @param text the text to measure.
+     * @return the width of the text.
+     * @throws IOException by pdfbox
+     */
+    public float getStringWidth(final PDFont font, final CharSequence text)
+            throws IOException {
+        return getStringWidth(font, text, 0, text.length());
+    }
+
+    /**
+     * Returns the width of the given range of the text in glyph space units
+     * (1/1000 of the font size). Measuring does not allocate, unless a code
+     * point is measured for the first time.
+     *
+     * @param font  the font this table belongs to.
+     * @param text  the text to measure.
+     * @param start the index of the first character to measure.
+     * @param end   the index after the last character to measure.
+     * @return the width of the text range.
+     * @throws IOException by pdfbox
+     */
+    public float getStringWidth(final PDFont font, final CharSequence text,
+                                final int start, final int end) throws IOException {
+        float width = 0;
+        int index = start;
+        while (index < end) {
+            char c = text.charAt(index++);
+            int codePoint = c;
+            if (Character.isHighSurrogate(c) && index < end
+                    && Character.isLowSurrogate(text.charAt(index))) {
+                codePoint = Character.toCodePoint(c, text.charAt(index++));
+            }
+            width += getWidth(font, codePoint);
+        }
+        return width;
+    }
+
+    /**
+     * Returns the number of characters of the given text range that fit into
+     * the given width in glyph space units (1/1000 of the font size). The range
+     * is only measured up to the first character exceeding the width, so
+     * breaking a long word into several lines does not measure the whole rest
+     * of the word for each line. Surrogate pairs are never split.
+     *
+     * @param font     the font this table belongs to.
+     * @param text     the text to measure.
+     * @param start    the index of the first character to measure.
+     * @param end      the index after the last character to measure.
+     * @param maxWidth the maximum width to obey.
+     * @return the number of characters (starting at <code>start</code>) that
+     * fit into the given width.
+     * @throws IOException by pdfbox
+     */
+    public int getFittingCharacters(final PDFont font,
+                                    final CharSequence text, final int start, final int end,
+                                    final float maxWidth) throws IOException {
+        float width = 0;
+        int fitting = start;
+        int index = start;
+        while (index < end) {
+            char c = text.charAt(index++);
+            int codePoint = c;
+            if (Character.isHighSurrogate(c) && index < end
+                    && Character.isLowSurrogate(text.charAt(index))) {
+                codePoint = Character.toCodePoint(c, text.charAt(index++));
+            }
+            width += getWidth(font, codePoint);
+            if (width > maxWidth) {
+                break;
+            }
+            fitting = index;
+        }
+        return fitting - start;
+    }
+
+    private float[] getPage(final int pageIndex) {
+        float[] page = pages.get(pageIndex);
+        if (page == null) {
+            float[] newPage = new float[PAGE_SIZE];
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                newPage[i] = Float.NaN;
+            }
+            if (pages.compareAndSet(pageIndex, null, newPage)) {
+                page = newPage;
+            } else {
+                page = pages.get(pageIndex);
+            }
+        }
+        return page;
+    }
+
+    private synchronized float measure(final PDFont font, final int codePoint)
+            throws IOException {
+        return font.getStringWidth(new String(Character.toChars(codePoint)));
+    }
+
+}
@@ -0,0 +1,20 @@
+package rst.pdfbox.layout.text;
+
+
+/**
+ * A {@link WrappingNewLine} terminating a line whose last word has been
+ * hyphenated. The hyphen at the end of the preceding styled text is not
+ * contained in the original text, see {@link TextSequenceUtil#deWrap(TextSequence)}.
+ */
+public class HyphenatingNewLine extends WrappingNewLine {
+
+    /**
+     * See {@link NewLine#NewLine(FontDescriptor)}.
+     *
+     * @param fontDescriptor the font and size associated with this new line.
+     */
+    public HyphenatingNewLine(FontDescriptor fontDescriptor) {
+        super(fontDescriptor);
+    }
+
+}
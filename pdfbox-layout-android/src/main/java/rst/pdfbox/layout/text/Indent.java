@@ -94,7 +94,7 @@ public class Indent extends ControlFragment {
                   final PDFont font, final Alignment alignment, @ColorInt final int color)
             throws IOException {
         this(label, indentWidth, indentUnit,
-                new FontDescriptor(font, fontSize), alignment, color);
+                FontDescriptor.getInstance(font, fontSize), alignment, color);
     }
 
     /**
@@ -116,8 +116,7 @@ public class Indent extends ControlFragment {
         float indent = calculateIndent(indentWidth, indentUnit, fontDescriptor);
         float textWidth = 0;
         if (label != null && !label.isEmpty()) {
-            textWidth = fontDescriptor.getSize()
-                    * fontDescriptor.getFont().getStringWidth(label) / 1000f;
+            textWidth = TextSequenceUtil.getStringWidth(label, fontDescriptor);
         }
         float marginLeft = 0;
         float marginRight = 0;
@@ -0,0 +1,355 @@
+package rst.pdfbox.layout.text;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import rst.pdfbox.layout.util.HyphenatingWordBreaker;
+import rst.pdfbox.layout.util.IndexedWordBreaker;
+import rst.pdfbox.layout.util.WordBreakerFactory;
+
+/**
+ * Word-wraps a text sequence into {@link TextLine}s in a single pass. The
+ * fragments of the sequence are consumed lazily while iterating, and every
+ * line is emitted as soon as it is complete. Words are not split into
+ * separate styled texts, instead the lines refer to ranges of the original
+ * fragments.
+ * <p>
+ * Since iterators may not throw checked exceptions, any {@link IOException}
+ * raised by pdfbox while measuring is wrapped into a
+ * {@link LineBreakException}. Use {@link #nextLine()} in order to get the
+ * {@link IOException} itself.
+ */
+public class LineBreaker implements Iterator<TextLine> {
+
+    private final Iterator<TextFragment> fragments;
+    private final float maxWidth;
+    private final IndexedWordBreaker wordBreaker;
+
+    private TextLine line = new TextLine();
+    private TextLine completed;
+    private boolean exhausted;
+    private int consumedFragments;
+
+    private float indentation = 0;
+    private StyledText blankIndent;
+    private float lineLength = 0;
+    private boolean isWrappedLine = false;
+
+    /**
+     * the fragment currently being wrapped.
+     */
+    private StyledText fragment;
+    /**
+     * the start of the next word of the current fragment, or -1 if the
+     * fragment has been completely wrapped.
+     */
+    private int nextWordStart = -1;
+    private boolean isFirstWord;
+    /**
+     * the (remaining part of the) word currently being wrapped, where start is
+     * -1 if there is none.
+     */
+    private int wordStart = -1;
+    private int wordEnd;
+    private int wordFlags;
+
+    /**
+     * Creates a line breaker.
+     *
+     * @param text     the text to break into lines.
+     * @param maxWidth the max width to fit, if &gt; 0.
+     */
+    public LineBreaker(final TextSequence text, final float maxWidth) {
+        this(text, maxWidth, WordBreakerFactory.getIndexedWordBreaker());
+    }
+
+    /**
+     * Creates a line breaker.
+     *
+     * @param text        the text to break into lines.
+     * @param maxWidth    the max width to fit, if &gt; 0.
+     * @param wordBreaker the word breaker to use.
+     */
+    public LineBreaker(final TextSequence text, final float maxWidth,
+                       final IndexedWordBreaker wordBreaker) {
+        this(text.iterator(), maxWidth, wordBreaker, 0);
+    }
+
+    /**
+     * Creates a line breaker that resumes wrapping right after a (hard)
+     * {@link NewLine}.
+     *
+     * @param fragments   the fragments following the new line.
+     * @param maxWidth    the max width to fit, if &gt; 0.
+     * @param wordBreaker the word breaker to use.
+     * @param indentation the indentation in effect after the new line.
+     */
+    LineBreaker(final Iterator<TextFragment> fragments, final float maxWidth,
+                final IndexedWordBreaker wordBreaker, final float indentation) {
+        this.fragments = fragments;
+        this.maxWidth = maxWidth;
+        this.wordBreaker = wordBreaker;
+        if (indentation > 0) {
+            this.indentation = indentation;
+            this.blankIndent = new Indent(indentation).toStyledText();
+            this.lineLength = indentation;
+            line.add(blankIndent);
+        }
+    }
+
+    /**
+     * @return the number of fragments consumed so far.
+     */
+    int getConsumedFragments() {
+        return consumedFragments;
+    }
+
+    /**
+     * @return the current indentation.
+     */
+    float getIndentation() {
+        return indentation;
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            return fill();
+        } catch (IOException e) {
+            throw new LineBreakException(e);
+        }
+    }
+
+    @Override
+    public TextLine next() {
+        try {
+            TextLine next = nextLine();
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            return next;
+        } catch (IOException e) {
+            throw new LineBreakException(e);
+        }
+    }
+
+    /**
+     * Returns the next line.
+     *
+     * @return the next line, or <code>null</code> if there are no more lines.
+     * @throws IOException by pdfbox
+     */
+    public TextLine nextLine() throws IOException {
+        if (!fill()) {
+            return null;
+        }
+        TextLine next = completed;
+        completed = null;
+        return next;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Wraps fragments until a line has been completed, or the text is
+     * exhausted.
+     *
+     * @return <code>true</code> if a line has been completed.
+     * @throws IOException by pdfbox
+     */
+    private boolean fill() throws IOException {
+        while (completed == null && !exhausted) {
+            if (wordStart >= 0) {
+                wrapWord();
+            } else if (nextWordStart >= 0) {
+                nextWord();
+            } else if (fragments.hasNext()) {
+                ++consumedFragments;
+                consume(fragments.next());
+            } else {
+                exhausted = true;
+                if (line.getRunCount() > 0) {
+                    completed = line;
+                }
+                line = null;
+            }
+        }
+        return completed != null;
+    }
+
+    private void consume(final TextFragment next) throws IOException {
+        if (next instanceof NewLine) {
+            isWrappedLine = next instanceof WrappingNewLine;
+            completeLine((NewLine) next);
+            lineLength = indentation;
+            if (indentation > 0) {
+                line.add(blankIndent);
+            }
+        } else if (next instanceof Indent) {
+            if (indentation > 0) {
+                // reset indentation
+                line.removeLast();
+                indentation = 0;
+            }
+            indentation = next.getWidth();
+            lineLength = next.getWidth();
+            blankIndent = new Indent(indentation).toStyledText();
+            line.add(((Indent) next).toStyledText());
+        } else {
+            if (next instanceof StyledText) {
+                fragment = (StyledText) next;
+            } else {
+                fragment = new StyledText(next.getText(),
+                        next.getFontDescriptor(), next.getColor());
+            }
+            nextWordStart = 0;
+            isFirstWord = true;
+        }
+    }
+
+    /**
+     * Determines the next word of the current fragment. Words are separated by
+     * blanks, where any word but the first starts with its separating blank.
+     */
+    private void nextWord() {
+        String text = fragment.getText();
+        wordStart = nextWordStart;
+        wordEnd = text.indexOf(' ', isFirstWord ? wordStart : wordStart + 1);
+        if (wordEnd < 0) {
+            wordEnd = text.length();
+            nextWordStart = -1;
+        } else {
+            nextWordStart = wordEnd;
+        }
+        wordFlags = 0;
+        if (isFirstWord) {
+            wordFlags |= TextLine.LEFT_MARGIN;
+            isFirstWord = false;
+        }
+        if (wordEnd == text.length()) {
+            wordFlags |= TextLine.RIGHT_MARGIN;
+        }
+    }
+
+    /**
+     * Wraps the current word. If the word does not fit, either the word or its
+     * tail remains to be wrapped in the next line.
+     */
+    private void wrapWord() throws IOException {
+        String text = fragment.getText();
+        int replacedStart = wordStart;
+        int start = wordStart;
+        int end = wordEnd;
+        if (isWrappedLine && lineLength == indentation) {
+            // start of line, replace leading blanks
+            while (start < end && Character.isWhitespace(text.charAt(start))) {
+                ++start;
+            }
+        }
+
+        FontDescriptor fontDescriptor = fragment.getFontDescriptor();
+        float leftMargin = (wordFlags & TextLine.LEFT_MARGIN) != 0 ? fragment
+                .getLeftMargin() : 0;
+        float rightMargin = (wordFlags & TextLine.RIGHT_MARGIN) != 0 ? fragment
+                .getRightMargin() : 0;
+        float length = fontDescriptor.getStringWidth(text, start, end)
+                + leftMargin + rightMargin;
+
+        if (maxWidth <= 0 || lineLength + length <= maxWidth) {
+            // word fits, so just add it
+            addRun(replacedStart, start, end, wordFlags, length);
+            wordStart = -1;
+            return;
+        }
+
+        // word exceeds max width, so create new line
+
+        // break hard, if the text does not fit in a full (next) line
+        boolean breakHard = indentation + length > maxWidth;
+        int breakIndex = wordBreaker.findBreakIndex(text, start, end,
+                fontDescriptor, maxWidth - lineLength - leftMargin, breakHard);
+        boolean hyphenated = false;
+        if (breakIndex >= 0) {
+            // word is broken
+            float headLength = fontDescriptor.getStringWidth(text, start,
+                    breakIndex) + leftMargin;
+            int headFlags = wordFlags & TextLine.LEFT_MARGIN;
+            hyphenated = wordBreaker instanceof HyphenatingWordBreaker
+                    && ((HyphenatingWordBreaker) wordBreaker).isHyphenated(
+                    text, start, end, breakIndex);
+            if (hyphenated) {
+                headLength += fontDescriptor.getStringWidth(
+                        TextLine.HYPHEN_TEXT, 0, 1);
+                headFlags |= TextLine.HYPHEN;
+            }
+            addRun(replacedStart, start, breakIndex, headFlags, headLength);
+            wordStart = breakIndex;
+            wordFlags &= ~TextLine.LEFT_MARGIN;
+        } else if (lineLength == indentation) {
+            // Begin of line and word could now be broke...
+            // Well, so we have to use it as it is,
+            // it won't get any better in the next line
+            addRun(replacedStart, start, end, wordFlags, length);
+            wordStart = -1;
+        } else {
+            // give it another try in a new line, there
+            // will be more space.
+            if (line.getRunCount() > 0) {
+                // since the current word is not used, take
+                // font descriptor of last run. Otherwise
+                // the line break might be to high
+                fontDescriptor = line.getRunFragment(line.getRunCount() - 1)
+                        .getFontDescriptor();
+            }
+        }
+
+        // wrap line only if not empty
+        if (lineLength > indentation) {
+            // and terminate it with a new line
+            completeLine(hyphenated ? new HyphenatingNewLine(fontDescriptor)
+                    : new WrappingNewLine(fontDescriptor));
+            isWrappedLine = true;
+            if (indentation > 0) {
+                line.add(blankIndent);
+            }
+            lineLength = indentation;
+        }
+    }
+
+    private void addRun(final int replacedStart, final int start,
+                        final int end, final int runFlags, final float length) {
+        line.add(fragment, replacedStart, start, end, runFlags, length);
+        if (length > 0) {
+            lineLength += length;
+        }
+    }
+
+    private void completeLine(final NewLine newLine) {
+        line.setNewLine(newLine);
+        completed = line;
+        line = new TextLine();
+    }
+
+    /**
+     * Unchecked wrapper for an {@link IOException} raised while iterating the
+     * lines.
+     */
+    public static class LineBreakException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        public LineBreakException(final IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+}
@@ -0,0 +1,155 @@
+package rst.pdfbox.layout.text;
+
+import android.graphics.Color;
+
+import com.tom_roush.pdfbox.pdmodel.font.PDFont;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Stack;
+
+import rst.pdfbox.layout.text.ControlCharacters.BoldControlCharacter;
+import rst.pdfbox.layout.text.ControlCharacters.ColorControlCharacter;
+import rst.pdfbox.layout.text.ControlCharacters.ItalicControlCharacter;
+import rst.pdfbox.layout.text.ControlCharacters.MetricsControlCharacter;
+import rst.pdfbox.layout.text.ControlCharacters.NewLineControlCharacter;
+import rst.pdfbox.layout.text.ControlCharacters.PlaceholderControlCharacter;
+import rst.pdfbox.layout.text.IndentCharacters.IndentCharacter;
+import rst.pdfbox.layout.text.annotations.AnnotatedStyledText;
+import rst.pdfbox.layout.text.annotations.Annotation;
+import rst.pdfbox.layout.text.annotations.AnnotationCharacters.AnnotationControlCharacter;
+
+/**
+ * Turns the tokenized markup - plain text and {@link ControlCharacter}s - into
+ * text fragments. The style state (bold, italic, color, annotations, indent)
+ * is kept between calls, so the markup may be passed in pieces.
+ */
+class MarkupInterpreter {
+
+    private final float fontSize;
+    private final PDFont plainFont;
+    private final PDFont boldFont;
+    private final PDFont italicFont;
+    private final PDFont boldItalicFont;
+
+    private boolean bold = false;
+    private boolean italic = false;
+    private int color;
+    private MetricsControlCharacter metricsControl = null;
+    private final Map<Class<? extends Annotation>, Annotation> annotationMap = new HashMap<Class<? extends Annotation>, Annotation>();
+    private final Stack<IndentCharacter> indentStack = new Stack<IndentCharacter>();
+
+    /**
+     * Creates an interpreter.
+     *
+     * @param fontSize       the font size to use.
+     * @param plainFont      the plain font.
+     * @param boldFont       the bold font.
+     * @param italicFont     the italic font.
+     * @param boldItalicFont the bold-italic font.
+     * @param color          the initial color, <code>null</code> for black.
+     */
+    MarkupInterpreter(final float fontSize, final PDFont plainFont,
+                      final PDFont boldFont, final PDFont italicFont,
+                      final PDFont boldItalicFont, final Integer color) {
+        this.fontSize = fontSize;
+        this.plainFont = plainFont;
+        this.boldFont = boldFont;
+        this.italicFont = italicFont;
+        this.boldItalicFont = boldItalicFont;
+        this.color = color == null ? Color.BLACK : color;
+    }
+
+    /**
+     * Interprets the next part of the markup.
+     *
+     * @param fragment the plain text or control character.
+     * @param consumer the consumer to pass the created fragments to.
+     * @throws IOException by pdfbox
+     */
+    void interpret(final CharSequence fragment,
+                   final TextFragmentConsumer consumer) throws IOException {
+        if (fragment instanceof ControlCharacter) {
+            if (fragment instanceof NewLineControlCharacter) {
+                consumer.consume(new NewLine(fontSize));
+            }
+            if (fragment instanceof BoldControlCharacter) {
+                bold = !bold;
+            }
+            if (fragment instanceof ItalicControlCharacter) {
+                italic = !italic;
+            }
+            if (fragment instanceof ColorControlCharacter) {
+                color = ((ColorControlCharacter) fragment).getColor();
+            }
+            if (fragment instanceof AnnotationControlCharacter) {
+                AnnotationControlCharacter<?> annotationControlCharacter = (AnnotationControlCharacter<?>) fragment;
+                if (annotationMap.containsKey(annotationControlCharacter.getAnnotationType())) {
+                    annotationMap.remove(annotationControlCharacter
+                            .getAnnotationType());
+                } else {
+                    annotationMap.put(
+                            annotationControlCharacter.getAnnotationType(),
+                            annotationControlCharacter.getAnnotation());
+                }
+            }
+            if (fragment instanceof MetricsControlCharacter) {
+                if (metricsControl != null && metricsControl.toString().equals(fragment.toString())) {
+                    // end marker
+                    metricsControl = null;
+                } else {
+                    metricsControl = (MetricsControlCharacter) fragment;
+                }
+            }
+            if (fragment instanceof IndentCharacter) {
+                IndentCharacter currentIndent = (IndentCharacter) fragment;
+                if (currentIndent.getLevel() == 0) {
+                    // indentation of 0 resets indent
+                    indentStack.clear();
+                    consumer.consume(Indent.UNINDENT);
+                    return;
+                } else {
+                    IndentCharacter last = null;
+                    while (!indentStack.isEmpty()
+                            && indentStack.peek() != null
+                            && currentIndent.getLevel() <= indentStack
+                            .peek().getLevel()) {
+                        last = indentStack.pop();
+                    }
+                    if (last != null && last.equals(currentIndent)) {
+                        currentIndent = last;
+                    }
+                    indentStack.push(currentIndent);
+                    consumer.consume(currentIndent.createNewIndent(fontSize,
+                            plainFont, color));
+                }
+            }
+            if (fragment instanceof PlaceholderControlCharacter) {
+                consumer.consume(new MarkupTemplate.Placeholder(
+                        ((PlaceholderControlCharacter) fragment).getName(),
+                        createStyledText("")));
+            }
+        } else {
+            consumer.consume(createStyledText(fragment.toString()));
+        }
+    }
+
+    private StyledText createStyledText(final String text) {
+        PDFont font = TextFlowUtil.getFont(bold, italic, plainFont, boldFont,
+                italicFont, boldItalicFont);
+        float baselineOffset = 0;
+        float currentFontSize = fontSize;
+        if (metricsControl != null) {
+            baselineOffset = metricsControl.getBaselineOffsetScale() * fontSize;
+            currentFontSize *= metricsControl.getFontScale();
+        }
+        if (annotationMap.isEmpty()) {
+            return new StyledText(text, currentFontSize, font, color,
+                    baselineOffset);
+        }
+        return new AnnotatedStyledText(text, currentFontSize, font, color,
+                baselineOffset, annotationMap.values());
+    }
+
+}
@@ -0,0 +1,129 @@
+package rst.pdfbox.layout.text;
+
+import com.tom_roush.pdfbox.pdmodel.font.PDFont;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Collections;
+
+/**
+ * Parses markup from a {@link Reader} or channel, passing the created text
+ * fragments to a {@link TextFragmentConsumer}. Other than
+ * {@link TextFlowUtil#createTextFlowFromMarkup(String, float, PDFont, PDFont, PDFont, PDFont)}
+ * this does not require the complete markup in memory: it is read in chunks
+ * and tokenized line by line, where the style state (bold, italic, color,
+ * annotations, indent) is carried from one line to the next. So only the
+ * current line is held in memory, which makes it suitable for huge inputs.
+ * <p>
+ * Since markup is tokenized per line, control characters must not span line
+ * breaks, e.g. a link URL may not contain a new line.
+ */
+public class MarkupStreamParser {
+
+    private final static int BUFFER_SIZE = 8192;
+
+    private final float fontSize;
+    private final PDFont plainFont;
+    private final PDFont boldFont;
+    private final PDFont italicFont;
+    private final PDFont boldItalicFont;
+
+    /**
+     * Creates a parser using the fonts of the given {@link BaseFont}.
+     *
+     * @param fontSize the font size to use.
+     * @param baseFont the base font describing the bundle of
+     *                 plain/blold/italic/bold-italic fonts.
+     */
+    public MarkupStreamParser(final float fontSize, final BaseFont baseFont) {
+        this(fontSize, baseFont.getPlainFont(), baseFont.getBoldFont(),
+                baseFont.getItalicFont(), baseFont.getBoldItalicFont());
+    }
+
+    /**
+     * Creates a parser.
+     *
+     * @param fontSize       the font size to use.
+     * @param plainFont      the plain font.
+     * @param boldFont       the bold font.
+     * @param italicFont     the italic font.
+     * @param boldItalicFont the bold-italic font.
+     */
+    public MarkupStreamParser(final float fontSize, final PDFont plainFont,
+                              final PDFont boldFont, final PDFont italicFont,
+                              final PDFont boldItalicFont) {
+        this.fontSize = fontSize;
+        this.plainFont = plainFont;
+        this.boldFont = boldFont;
+        this.italicFont = italicFont;
+        this.boldItalicFont = boldItalicFont;
+    }
+
+    /**
+     * Parses the markup read from the given channel. The channel is not
+     * closed.
+     *
+     * @param channel  the channel to read from.
+     * @param charset  the charset of the markup.
+     * @param consumer the consumer to pass the fragments to.
+     * @throws IOException by reading or pdfbox.
+     */
+    public void parse(final ReadableByteChannel channel,
+                      final Charset charset, final TextFragmentConsumer consumer)
+            throws IOException {
+        parse(Channels.newReader(channel, charset.newDecoder(), -1), consumer);
+    }
+
+    /**
+     * Parses the markup read from the given reader. The reader is not closed.
+     *
+     * @param reader   the reader to read from.
+     * @param consumer the consumer to pass the fragments to.
+     * @throws IOException by reading or pdfbox.
+     */
+    public void parse(final Reader reader, final TextFragmentConsumer consumer)
+            throws IOException {
+        MarkupTokenizer tokenizer = new MarkupTokenizer(
+                TextFlowUtil.getMarkupFactories());
+        MarkupInterpreter interpreter = new MarkupInterpreter(fontSize,
+                plainFont, boldFont, italicFont, boldItalicFont, null);
+
+        char[] buffer = new char[BUFFER_SIZE];
+        StringBuilder line = new StringBuilder();
+        int read;
+        while ((read = reader.read(buffer)) >= 0) {
+            int begin = 0;
+            for (int index = 0; index < read; ++index) {
+                if (buffer[index] == '\n') {
+                    line.append(buffer, begin, index + 1 - begin);
+                    parseLine(line, tokenizer, interpreter, consumer);
+                    begin = index + 1;
+                }
+            }
+            line.append(buffer, begin, read - begin);
+        }
+        parseLine(line, tokenizer, interpreter, consumer);
+    }
+
+    /**
+     * Tokenizes a single line (including its line break, if any) and clears
+     * the given builder.
+     */
+    private void parseLine(final StringBuilder line,
+                           final MarkupTokenizer tokenizer, final MarkupInterpreter interpreter,
+                           final TextFragmentConsumer consumer) throws IOException {
+        if (line.length() == 0) {
+            return;
+        }
+        Iterable<CharSequence> parts = tokenizer.tokenize(Collections
+                .<CharSequence>singleton(line.toString()));
+        line.setLength(0);
+        for (CharSequence part : parts) {
+            interpreter.interpret(part, consumer);
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+package rst.pdfbox.layout.text;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Markup that has been parsed once, so it can be turned into text flows over
+ * and over again. The markup may contain placeholders like
+ * <code>{$name}</code>, which are replaced by the values bound to them:
+ * <p>
+ * <pre>
+ * MarkupTemplate template = TextFlowUtil.compileMarkup(
+ *         "Dear *{$name}*, you owe us {$amount}.", 11, BaseFont.Times);
+ * Map&lt;String, Object&gt; parameters = new HashMap&lt;String, Object&gt;();
+ * parameters.put("name", "John Doe");
+ * parameters.put("amount", "$42");
+ * paragraph.add(template.bind(parameters));
+ * </pre>
+ * <p>
+ * A value takes the style (font, color, annotations) in effect at its
+ * placeholder, and is taken as plain text, where line breaks start a new line.
+ * The static parts of the template are shared by all bound text flows, as
+ * they are immutable anyway. So a template may be bound by multiple threads
+ * concurrently.
+ */
+public class MarkupTemplate {
+
+    private final static Pattern LINE_BREAK = Pattern.compile("\r\n|\n");
+
+    private final List<TextFragment> fragments;
+    private final Set<String> parameterNames;
+
+    /**
+     * Creates a template from the compiled fragments. The width each static
+     * fragment caches is filled right away, so laying out bound text flows
+     * concurrently only reads the shared fragments.
+     *
+     * @param compiled the fragments, where placeholders are represented by
+     *                 {@link Placeholder}.
+     * @throws IOException by pdfbox
+     */
+    MarkupTemplate(final Iterable<TextFragment> compiled) throws IOException {
+        List<TextFragment> fragments = new ArrayList<TextFragment>();
+        Set<String> parameterNames = new LinkedHashSet<String>();
+        for (TextFragment fragment : compiled) {
+            if (fragment instanceof Placeholder) {
+                parameterNames.add(((Placeholder) fragment).getParameterName());
+            } else {
+                fragment.getWidth();
+            }
+            fragments.add(fragment);
+        }
+        this.fragments = Collections.unmodifiableList(fragments);
+        this.parameterNames = Collections.unmodifiableSet(parameterNames);
+    }
+
+    /**
+     * @return the names of all parameters used in this template, in order of
+     * their first occurrence.
+     */
+    public Set<String> getParameterNames() {
+        return parameterNames;
+    }
+
+    /**
+     * Creates a text flow from this template, where all placeholders are
+     * replaced by the {@link Object#toString() string representation} of the
+     * values bound to them.
+     *
+     * @param parameters the values by parameter name.
+     * @return the created text flow.
+     * @throws IllegalArgumentException if there is no value for a parameter.
+     */
+    public TextFlow bind(final Map<String, ?> parameters) {
+        TextFlow result = new TextFlow();
+        for (TextFragment fragment : fragments) {
+            if (fragment instanceof Placeholder) {
+                Placeholder placeholder = (Placeholder) fragment;
+                Object value = parameters.get(placeholder.getParameterName());
+                if (value == null) {
+                    throw new IllegalArgumentException("no value for parameter '"
+                            + placeholder.getParameterName() + "'");
+                }
+                placeholder.bind(value.toString(), result);
+            } else {
+                result.add(fragment);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "MarkupTemplate [fragments=" + fragments + "]";
+    }
+
+    /**
+     * Marks the position of a parameter in the compiled fragments. It carries
+     * a (textless) prototype of the styled text the value is drawn with.
+     */
+    static class Placeholder extends ControlFragment {
+
+        private final String parameterName;
+        private final StyledText prototype;
+
+        Placeholder(final String parameterName, final StyledText prototype) {
+            super(null, "", prototype.getFontDescriptor(), prototype.getColor());
+            this.parameterName = parameterName;
+            this.prototype = prototype;
+        }
+
+        public String getParameterName() {
+            return parameterName;
+        }
+
+        /**
+         * Adds the styled value to the given flow.
+         *
+         * @param value the value to add.
+         * @param flow  the flow to add to.
+         */
+        void bind(final String value, final TextFlow flow) {
+            String[] lines = LINE_BREAK.split(value, -1);
+            for (int index = 0; index < lines.length; ++index) {
+                if (index > 0) {
+                    flow.add(new NewLine(prototype.getFontDescriptor()));
+                }
+                if (!lines[index].isEmpty()) {
+                    flow.add(prototype.inheritAttributes(lines[index]));
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Placeholder [" + parameterName + "]";
+        }
+    }
+
+}
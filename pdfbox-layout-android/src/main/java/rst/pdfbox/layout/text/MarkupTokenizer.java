@@ -0,0 +1,165 @@
+package rst.pdfbox.layout.text;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+
+import rst.pdfbox.layout.text.ControlCharacters.ControlCharacterFactory;
+import rst.pdfbox.layout.text.ControlCharacters.NewLineControlCharacter;
+
+/**
+ * Splits (markup) text into plain text and {@link ControlCharacter}s in a
+ * single pass. The {@link ControlCharacterFactory factories} act as token
+ * recognizers: each one keeps a matcher on the text, which is only advanced
+ * once the scan passes its last match, and the earliest match wins. If
+ * multiple factories match at the same position, the one given first wins.
+ * <p>
+ * The text between the control characters is unescaped in the same scan,
+ * where any text not containing a backslash is taken as it is.
+ */
+public class MarkupTokenizer {
+
+    private final List<ControlCharacterFactory> factories;
+
+    /**
+     * Creates a tokenizer.
+     *
+     * @param factories the factories recognizing the control characters, in
+     *                  order of precedence.
+     */
+    public MarkupTokenizer(final List<? extends ControlCharacterFactory> factories) {
+        this.factories = new ArrayList<ControlCharacterFactory>(factories);
+    }
+
+    /**
+     * Tokenizes the given markup.
+     *
+     * @param markup the markup, where any parts not being a {@link String}
+     *               are passed as they are.
+     * @return the plain text and control characters.
+     */
+    public List<CharSequence> tokenize(final Iterable<CharSequence> markup) {
+        List<CharSequence> result = new ArrayList<CharSequence>();
+        boolean beginOfLine = true;
+        for (CharSequence current : markup) {
+            if (current instanceof String) {
+                beginOfLine = tokenize((String) current, beginOfLine, result);
+            } else {
+                if (current instanceof NewLineControlCharacter) {
+                    beginOfLine = true;
+                }
+                result.add(current);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Tokenizes a single string.
+     *
+     * @param text        the text to tokenize.
+     * @param beginOfLine indicates if the text starts at the begin of a line.
+     * @param result      the list to add the tokens to.
+     * @return <code>true</code> if the end of the text is still at the begin
+     * of a line.
+     */
+    private boolean tokenize(final String text, boolean beginOfLine,
+                             final List<CharSequence> result) {
+        int count = factories.size();
+        int length = text.length();
+        Matcher[] matchers = new Matcher[count];
+        int[] starts = new int[count];
+        for (int index = 0; index < count; ++index) {
+            matchers[index] = factories.get(index).getPattern().matcher(text);
+            if (!factories.get(index).patternMatchesBeginOfLine()) {
+                starts[index] = find(matchers[index], 0);
+            }
+        }
+
+        int position = 0;
+        while (position < length) {
+            int best = -1;
+            int bestStart = length;
+            for (int index = 0; index < count; ++index) {
+                if (factories.get(index).patternMatchesBeginOfLine()) {
+                    if (beginOfLine && position < bestStart
+                            && lookingAt(matchers[index], position)) {
+                        best = index;
+                        bestStart = position;
+                    }
+                } else {
+                    if (starts[index] >= 0 && starts[index] < position) {
+                        starts[index] = find(matchers[index], position);
+                    }
+                    if (starts[index] >= 0 && starts[index] < bestStart) {
+                        best = index;
+                        bestStart = starts[index];
+                    }
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+
+            if (bestStart > position) {
+                addText(text.substring(position, bestStart), result);
+                beginOfLine = false;
+            }
+            ControlCharacterFactory factory = factories.get(best);
+            Matcher matcher = matchers[best];
+            ControlCharacter controlCharacter = factory.createControlCharacter(
+                    text, matcher, result);
+            result.add(controlCharacter);
+            position = matcher.end();
+            if (controlCharacter instanceof NewLineControlCharacter) {
+                beginOfLine = true;
+            } else if (factory.patternMatchesBeginOfLine()) {
+                beginOfLine = false;
+            }
+        }
+
+        if (position < length) {
+            addText(text.substring(position), result);
+            beginOfLine = false;
+        }
+        return beginOfLine;
+    }
+
+    /**
+     * Finds the next (non-empty) match starting at the given index.
+     *
+     * @return the start of the match, or <code>-1</code> if there is none.
+     */
+    private static int find(final Matcher matcher, int from) {
+        int length = matcher.regionEnd();
+        while (from <= length && matcher.find(from)) {
+            if (matcher.end() > matcher.start()) {
+                return matcher.start();
+            }
+            from = matcher.start() + 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Matches a begin of line pattern right at the given index.
+     */
+    private static boolean lookingAt(final Matcher matcher, final int index) {
+        matcher.reset();
+        matcher.region(index, matcher.regionEnd());
+        matcher.useTransparentBounds(true);
+        return matcher.lookingAt() && matcher.end() > matcher.start();
+    }
+
+    private void addText(final String part, final List<CharSequence> result) {
+        String text = part;
+        if (text.indexOf('\\') >= 0) {
+            for (ControlCharacterFactory factory : factories) {
+                text = factory.unescape(text);
+            }
+            text = ControlCharacters.unescapeBackslash(text);
+        }
+        result.add(text);
+    }
+
+}
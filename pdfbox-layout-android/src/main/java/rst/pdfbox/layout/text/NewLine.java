@@ -22,7 +22,7 @@ public class NewLine extends ControlFragment {
      * @param fontSize the font size, resp. the height of the new line.
      */
     public NewLine(final float fontSize) {
-        this(new FontDescriptor(DEFAULT_FONT_DESCRIPTOR.getFont(), fontSize));
+        this(FontDescriptor.getInstance(DEFAULT_FONT_DESCRIPTOR.getFont(), fontSize));
     }
 
     /**
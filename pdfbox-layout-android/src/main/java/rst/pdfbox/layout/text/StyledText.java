@@ -45,7 +45,7 @@ public class StyledText implements TextFragment {
      */
     public StyledText(final String text, final float size, final PDFont font,
                       final int color) {
-        this(text, new FontDescriptor(font, size), color);
+        this(text, FontDescriptor.getInstance(font, size), color);
     }
 
     /**
@@ -59,7 +59,7 @@ public class StyledText implements TextFragment {
      */
     public StyledText(final String text, final float size, final PDFont font,
                       final int color, final float baselineOffset) {
-        this(text, new FontDescriptor(font, size), color, baselineOffset, 0, 0);
+        this(text, FontDescriptor.getInstance(font, size), color, baselineOffset, 0, 0);
     }
 
     /**
@@ -132,9 +132,8 @@ public class StyledText implements TextFragment {
     @Override
     public float getWidth() throws IOException {
         if (width == null) {
-            width = getFontDescriptor().getSize()
-                    * getFontDescriptor().getFont().getStringWidth(getText())
-                    / 1000;
+            width = getFontDescriptor().getStringWidth(getText(), 0,
+                    getText().length());
             width += leftMargin;
             width += rightMargin;
         }
@@ -147,7 +146,7 @@ public class StyledText implements TextFragment {
 
     @Override
     public float getHeight() throws IOException {
-        return getFontDescriptor().getSize();
+        return getFontDescriptor().getLineHeight();
     }
 
     /**
@@ -155,9 +154,7 @@ public class StyledText implements TextFragment {
      * @throws IOException by pdfbox.
      */
     public float getAsent() throws IOException {
-        return getFontDescriptor().getSize()
-                * getFontDescriptor().getFont().getFontDescriptor().getAscent()
-                / 1000;
+        return getFontDescriptor().getAscent();
     }
 
     public float getBaselineOffset() {
@@ -7,10 +7,8 @@ import com.tom_roush.pdfbox.pdmodel.font.PDFont;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 
 /**
  * A text flow is a text sequence that {@link WidthRespecting respects a given
@@ -43,27 +41,34 @@ import java.util.Map;
 public class TextFlow implements TextSequence, WidthRespecting {
 
     public static final float DEFAULT_LINE_SPACING = 1.2f;
-    private static final String HEIGHT = "height";
-    private static final String WIDTH = "width";
-
-    private Map<String, Object> cache = new HashMap<String, Object>();
 
     private final List<TextFragment> text = new ArrayList<TextFragment>();
     private float lineSpacing = DEFAULT_LINE_SPACING;
     private float maxWidth = -1;
     private boolean applyLineSpacingToFirstLine = true;
 
-    private void clearCache() {
-        cache.clear();
-    }
-
-    private void setCachedValue(final String key, Object value) {
-        cache.put(key, value);
-    }
+    /**
+     * The version of the content, incremented on any modification.
+     */
+    private int version;
+    /**
+     * The cached layout of the content.
+     */
+    private TextLayout layout;
+    /**
+     * The index of the first fragment modified since the layout has been
+     * created.
+     */
+    private int firstModifiedIndex = Integer.MAX_VALUE;
+    /**
+     * The lines of another layout this flow consists of, as long as it has
+     * not been modified. See {@link #setLines(TextLayout, int, int)}.
+     */
+    private TextLayout view;
 
-    @SuppressWarnings("unchecked")
-    private <T> T getCachedValue(final String key, Class<T> type) {
-        return (T) cache.get(key);
+    private void contentChanged(final int modifiedIndex) {
+        ++version;
+        firstModifiedIndex = Math.min(firstModifiedIndex, modifiedIndex);
     }
 
     /**
@@ -142,8 +147,9 @@ public class TextFlow implements TextSequence, WidthRespecting {
      * @param fragment the fragment to add.
      */
     public void add(final TextFragment fragment) {
+        materialize();
         text.add(fragment);
-        clearCache();
+        contentChanged(text.size() - 1);
     }
 
     /**
@@ -152,8 +158,9 @@ public class TextFlow implements TextSequence, WidthRespecting {
      * @return the removed fragment (if any).
      */
     public TextFragment removeLast() {
+        materialize();
         if (text.size() > 0) {
-            clearCache();
+            contentChanged(text.size() - 1);
             return text.remove(text.size() - 1);
         }
         return null;
@@ -163,8 +170,8 @@ public class TextFlow implements TextSequence, WidthRespecting {
      * @return the last added fragment (if any).
      */
     public TextFragment getLast() {
+        materialize();
         if (text.size() > 0) {
-            clearCache();
             return text.get(text.size() - 1);
         }
         return null;
@@ -174,14 +181,54 @@ public class TextFlow implements TextSequence, WidthRespecting {
      * @return <code>true</code> if this flow does not contain any fragments.
      */
     public boolean isEmpty() {
+        if (view != null) {
+            return view.getLines().isEmpty();
+        }
         return text.isEmpty();
     }
 
     @Override
     public Iterator<TextFragment> iterator() {
+        materialize();
         return text.iterator();
     }
 
+    /**
+     * Makes this (empty) flow a view of the given lines of an existing layout,
+     * so they do not have to be wrapped again as long as the max width and
+     * line spacing of this flow match the layout. Any modification turns the
+     * lines into fragments again.
+     *
+     * @param source the layout containing the lines.
+     * @param from   the index of the first line.
+     * @param to     the index after the last line.
+     * @throws IOException by pdfbox
+     */
+    void setLines(final TextLayout source, final int from, final int to)
+            throws IOException {
+        text.clear();
+        view = new TextLayout(source, from, to, version,
+                isApplyLineSpacingToFirstLine());
+        contentChanged(0);
+    }
+
+    /**
+     * Turns the lines of the {@link #view} into fragments.
+     */
+    private void materialize() {
+        if (view == null) {
+            return;
+        }
+        List<TextLine> lines = view.getLines();
+        view = null;
+        for (TextLine line : lines) {
+            for (TextFragment fragment : line) {
+                text.add(fragment);
+            }
+        }
+        contentChanged(0);
+    }
+
     @Override
     public float getMaxWidth() {
         return maxWidth;
@@ -190,7 +237,6 @@ public class TextFlow implements TextSequence, WidthRespecting {
     @Override
     public void setMaxWidth(float maxWidth) {
         this.maxWidth = maxWidth;
-        clearCache();
     }
 
     /**
@@ -208,7 +254,6 @@ public class TextFlow implements TextSequence, WidthRespecting {
      */
     public void setLineSpacing(float lineSpacing) {
         this.lineSpacing = lineSpacing;
-        clearCache();
     }
 
     /**
@@ -236,33 +281,81 @@ public class TextFlow implements TextSequence, WidthRespecting {
         this.applyLineSpacingToFirstLine = applyLineSpacingToFirstLine;
     }
 
+    /**
+     * Returns the layout of this text flow for the current max width and line
+     * spacing. The layout is cached, and only re-created if either the
+     * content or one of those parameters has changed. If only the content has
+     * been modified (e.g. by adding text), the lines in front of the last
+     * (hard) new line before the modification are reused, and only the rest
+     * of the text is wrapped again.
+     *
+     * @return the layout of the text.
+     * @throws IOException by pdfbox
+     */
+    public TextLayout getLayout() throws IOException {
+        if (view != null) {
+            if (view.isSliceableFor(getMaxWidth(), getLineSpacing())) {
+                if (view.isApplyLineSpacingToFirstLine() != isApplyLineSpacingToFirstLine()) {
+                    view = new TextLayout(view, 0, view.getLines().size(),
+                            version, isApplyLineSpacingToFirstLine());
+                }
+                return view;
+            }
+            materialize();
+        }
+        if (layout != null
+                && layout.isLayoutOf(version, getMaxWidth(), getLineSpacing(),
+                isApplyLineSpacingToFirstLine())) {
+            return layout;
+        }
+        if (layout != null
+                && layout.isLayoutOf(layout.getVersion(), getMaxWidth(),
+                getLineSpacing(), isApplyLineSpacingToFirstLine())) {
+            layout = new TextLayout(layout, version, text, firstModifiedIndex);
+        } else {
+            layout = new TextLayout(version, this, getMaxWidth(),
+                    getLineSpacing(), isApplyLineSpacingToFirstLine());
+        }
+        firstModifiedIndex = Integer.MAX_VALUE;
+        return layout;
+    }
+
+    /**
+     * Wraps and measures the text in advance for the given max width, e.g. on
+     * a worker thread. The layout is cached, so any later call to
+     * {@link #getLayout()} uses it as long as neither the content nor the
+     * parameters have changed by then. A flow must not be modified or laid
+     * out by other threads while preparing its layout.
+     *
+     * @param maxWidth the max width the text is expected to be laid out for.
+     * @throws IOException by pdfbox
+     */
+    public void prepareLayout(final float maxWidth) throws IOException {
+        if (view != null || (layout != null
+                && layout.isLayoutOf(version, maxWidth, getLineSpacing(),
+                isApplyLineSpacingToFirstLine()))) {
+            return;
+        }
+        layout = new TextLayout(version, this, maxWidth, getLineSpacing(),
+                isApplyLineSpacingToFirstLine());
+        firstModifiedIndex = Integer.MAX_VALUE;
+    }
+
     @Override
     public float getWidth() throws IOException {
-        Float width = getCachedValue(WIDTH, Float.class);
-        if (width == null) {
-            width = TextSequenceUtil.getWidth(this, getMaxWidth());
-            setCachedValue(WIDTH, width);
-        }
-        return width;
+        return getLayout().getWidth();
     }
 
     @Override
     public float getHeight() throws IOException {
-        Float height = getCachedValue(HEIGHT, Float.class);
-        if (height == null) {
-            height = TextSequenceUtil.getHeight(this, getMaxWidth(),
-                    getLineSpacing(), isApplyLineSpacingToFirstLine());
-            setCachedValue(HEIGHT, height);
-        }
-        return height;
+        return getLayout().getHeight();
     }
 
     @Override
     public void drawText(PDPageContentStream contentStream, Position upperLeft,
                          Alignment alignment, DrawListener drawListener) throws IOException {
-        TextSequenceUtil.drawText(this, contentStream, upperLeft, drawListener, alignment,
-                getMaxWidth(), getLineSpacing(),
-                isApplyLineSpacingToFirstLine());
+        getLayout().drawText(contentStream, upperLeft, alignment,
+                drawListener);
     }
 
     public void drawTextRightAligned(PDPageContentStream contentStream,
@@ -276,6 +369,9 @@ public class TextFlow implements TextSequence, WidthRespecting {
      * @throws IOException by pdfbox.
      */
     public TextFlow removeLeadingEmptyLines() throws IOException {
+        if (view != null) {
+            return removeLeadingEmptyViewLines();
+        }
         if (text.size() == 0 || !(text.get(0) instanceof NewLine)) {
             return this;
         }
@@ -291,12 +387,33 @@ public class TextFlow implements TextSequence, WidthRespecting {
         return result;
     }
 
+    private TextFlow removeLeadingEmptyViewLines() throws IOException {
+        List<TextLine> lines = view.getLines();
+        int from = 0;
+        while (from < lines.size() && lines.get(from).getRunCount() == 0
+                && lines.get(from).getNewLine() != null) {
+            ++from;
+        }
+        if (from == 0) {
+            return this;
+        }
+        TextFlow result = createInstance();
+        result.setApplyLineSpacingToFirstLine(this.isApplyLineSpacingToFirstLine());
+        result.setLineSpacing(this.getLineSpacing());
+        result.setMaxWidth(this.getMaxWidth());
+        result.setLines(view, from, lines.size());
+        return result;
+    }
+
     protected TextFlow createInstance() {
         return new TextFlow();
     }
 
     @Override
     public String toString() {
+        if (view != null) {
+            return "TextFlow [lines=" + view.getLines() + "]";
+        }
         return "TextFlow [text=" + text + "]";
     }
 
@@ -1,6 +1,5 @@
 package rst.pdfbox.layout.text;
 
-import android.graphics.Color;
 import android.support.annotation.ColorInt;
 
 import com.tom_roush.pdfbox.pdmodel.font.PDFont;
@@ -8,23 +7,13 @@ import com.tom_roush.pdfbox.pdmodel.font.PDFont;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
 import java.util.regex.Matcher;
 
-import rst.pdfbox.layout.text.ControlCharacters.BoldControlCharacter;
-import rst.pdfbox.layout.text.ControlCharacters.ColorControlCharacter;
 import rst.pdfbox.layout.text.ControlCharacters.ControlCharacterFactory;
-import rst.pdfbox.layout.text.ControlCharacters.ItalicControlCharacter;
-import rst.pdfbox.layout.text.ControlCharacters.MetricsControlCharacter;
 import rst.pdfbox.layout.text.ControlCharacters.NewLineControlCharacter;
-import rst.pdfbox.layout.text.IndentCharacters.IndentCharacter;
-import rst.pdfbox.layout.text.annotations.AnnotatedStyledText;
-import rst.pdfbox.layout.text.annotations.Annotation;
 import rst.pdfbox.layout.text.annotations.AnnotationCharacters;
-import rst.pdfbox.layout.text.annotations.AnnotationCharacters.AnnotationControlCharacter;
 import rst.pdfbox.layout.text.annotations.AnnotationCharacters.AnnotationControlCharacterFactory;
 
 public class TextFlowUtil {
@@ -112,6 +101,54 @@ public class TextFlowUtil {
                 boldItalicFont, null);
     }
 
+    /**
+     * Convenience alternative to
+     * {@link #compileMarkup(String, float, PDFont, PDFont, PDFont, PDFont)}
+     * which allows to specifies the fonts to use by using the {@link BaseFont}
+     * enum.
+     *
+     * @param markup   the markup text.
+     * @param fontSize the font size to use.
+     * @param baseFont the base font describing the bundle of
+     *                 plain/blold/italic/bold-italic fonts.
+     * @return the compiled template.
+     * @throws IOException by pdfbox
+     */
+    public static MarkupTemplate compileMarkup(final String markup,
+                                               final float fontSize, final BaseFont baseFont) throws IOException {
+        return compileMarkup(markup, fontSize, baseFont.getPlainFont(),
+                baseFont.getBoldFont(), baseFont.getItalicFont(),
+                baseFont.getBoldItalicFont());
+    }
+
+    /**
+     * Compiles the given markup into a template, which may be
+     * {@link MarkupTemplate#bind(Map) bound} to create text flows without
+     * parsing the markup again. Besides the markup supported by
+     * {@link #createTextFlowFromMarkup(String, float, PDFont, PDFont, PDFont, PDFont)}
+     * the template may contain placeholders like <code>{$name}</code>.
+     *
+     * @param markup         the markup text.
+     * @param fontSize       the font size to use.
+     * @param plainFont      the plain font.
+     * @param boldFont       the bold font.
+     * @param italicFont     the italic font.
+     * @param boldItalicFont the bold-italic font.
+     * @return the compiled template.
+     * @throws IOException by pdfbox
+     */
+    public static MarkupTemplate compileMarkup(final String markup,
+                                               final float fontSize, final PDFont plainFont,
+                                               final PDFont boldFont, final PDFont italicFont,
+                                               final PDFont boldItalicFont) throws IOException {
+        List<ControlCharacterFactory> factories = getMarkupFactories();
+        factories.add(ControlCharacters.PLACEHOLDER_FACTORY);
+        final Iterable<CharSequence> parts = new MarkupTokenizer(factories)
+                .tokenize(Collections.<CharSequence>singleton(markup));
+        return new MarkupTemplate(createTextFlow(parts, fontSize, plainFont,
+                boldFont, italicFont, boldItalicFont, null));
+    }
+
     /**
      * Actually creates the text flow from the given (markup) text.
      *
@@ -129,89 +166,17 @@ public class TextFlowUtil {
             final PDFont plainFont, final PDFont boldFont,
             final PDFont italicFont, final PDFont boldItalicFont, Integer color) throws IOException {
         final TextFlow result = new TextFlow();
-        boolean bold = false;
-        boolean italic = false;
-        color = color == null ? Color.BLACK : color;
-        MetricsControlCharacter metricsControl = null;
-        Map<Class<? extends Annotation>, Annotation> annotationMap = new HashMap<Class<? extends Annotation>, Annotation>();
-        Stack<IndentCharacter> indentStack = new Stack<IndentCharacter>();
-        for (final CharSequence fragment : parts) {
+        MarkupInterpreter interpreter = new MarkupInterpreter(fontSize,
+                plainFont, boldFont, italicFont, boldItalicFont, color);
+        TextFragmentConsumer consumer = new TextFragmentConsumer() {
 
-            if (fragment instanceof ControlCharacter) {
-                if (fragment instanceof NewLineControlCharacter) {
-                    result.add(new NewLine(fontSize));
-                }
-                if (fragment instanceof BoldControlCharacter) {
-                    bold = !bold;
-                }
-                if (fragment instanceof ItalicControlCharacter) {
-                    italic = !italic;
-                }
-                if (fragment instanceof ColorControlCharacter) {
-                    color = ((ColorControlCharacter) fragment).getColor();
-                }
-                if (fragment instanceof AnnotationControlCharacter) {
-                    AnnotationControlCharacter<?> annotationControlCharacter = (AnnotationControlCharacter<?>) fragment;
-                    if (annotationMap.containsKey(annotationControlCharacter.getAnnotationType())) {
-                        annotationMap.remove(annotationControlCharacter
-                                .getAnnotationType());
-                    } else {
-                        annotationMap.put(
-                                annotationControlCharacter.getAnnotationType(),
-                                annotationControlCharacter.getAnnotation());
-                    }
-                }
-                if (fragment instanceof MetricsControlCharacter) {
-                    if (metricsControl != null && metricsControl.toString().equals(fragment.toString())) {
-                        // end marker
-                        metricsControl = null;
-                    } else {
-                        metricsControl = (MetricsControlCharacter) fragment;
-                    }
-                }
-                if (fragment instanceof IndentCharacter) {
-                    IndentCharacter currentIndent = (IndentCharacter) fragment;
-                    if (currentIndent.getLevel() == 0) {
-                        // indentation of 0 resets indent
-                        indentStack.clear();
-                        result.add(Indent.UNINDENT);
-                        continue;
-                    } else {
-                        IndentCharacter last = null;
-                        while (!indentStack.isEmpty()
-                                && indentStack.peek() != null
-                                && currentIndent.getLevel() <= indentStack
-                                .peek().getLevel()) {
-                            last = indentStack.pop();
-                        }
-                        if (last != null && last.equals(currentIndent)) {
-                            currentIndent = last;
-                        }
-                        indentStack.push(currentIndent);
-                        result.add(currentIndent.createNewIndent(fontSize,
-                                plainFont, color));
-                    }
-                }
-            } else {
-                PDFont font = getFont(bold, italic, plainFont, boldFont,
-                        italicFont, boldItalicFont);
-                float baselineOffset = 0;
-                float currentFontSize = fontSize;
-                if (metricsControl != null) {
-                    baselineOffset = metricsControl.getBaselineOffsetScale() * fontSize;
-                    currentFontSize *= metricsControl.getFontScale();
-                }
-                if (annotationMap.isEmpty()) {
-                    StyledText styledText = new StyledText(fragment.toString(),
-                            currentFontSize, font, color, baselineOffset);
-                    result.add(styledText);
-                } else {
-                    AnnotatedStyledText styledText = new AnnotatedStyledText(
-                            fragment.toString(), currentFontSize, font, color, baselineOffset,
-                            annotationMap.values());
-                    result.add(styledText);
-                }
+            @Override
+            public void consume(TextFragment fragment) {
+                result.add(fragment);
             }
+        };
+        for (final CharSequence fragment : parts) {
+            interpreter.interpret(fragment, consumer);
         }
         return result;
     }
@@ -250,10 +215,9 @@ public class TextFlowUtil {
      */
     public static Iterable<CharSequence> fromPlainText(
             final Iterable<CharSequence> text) {
-        Iterable<CharSequence> result = splitByControlCharacter(
-                ControlCharacters.NEWLINE_FACTORY, text);
-        result = unescapeBackslash(result);
-        return result;
+        return new MarkupTokenizer(
+                Collections.singletonList(ControlCharacters.NEWLINE_FACTORY))
+                .tokenize(text);
     }
 
     /**
@@ -276,22 +240,25 @@ public class TextFlowUtil {
      */
     public static Iterable<CharSequence> fromMarkup(
             final Iterable<CharSequence> markup) {
-        Iterable<CharSequence> text = markup;
-        text = splitByControlCharacter(ControlCharacters.NEWLINE_FACTORY, text);
-//        text = splitByControlCharacter(ControlCharacters.METRICS_FACTORY, text);
-        text = splitByControlCharacter(ControlCharacters.BOLD_FACTORY, text);
-        text = splitByControlCharacter(ControlCharacters.ITALIC_FACTORY, text);
-        text = splitByControlCharacter(ControlCharacters.COLOR_FACTORY, text);
+        return new MarkupTokenizer(getMarkupFactories()).tokenize(markup);
+    }
 
+    /**
+     * @return the factories of all control characters supported in markup, in
+     * order of precedence.
+     */
+    static List<ControlCharacterFactory> getMarkupFactories() {
+        List<ControlCharacterFactory> factories = new ArrayList<ControlCharacterFactory>();
+        factories.add(ControlCharacters.NEWLINE_FACTORY);
+//        factories.add(ControlCharacters.METRICS_FACTORY);
+        factories.add(ControlCharacters.BOLD_FACTORY);
+        factories.add(ControlCharacters.ITALIC_FACTORY);
+        factories.add(ControlCharacters.COLOR_FACTORY);
         for (AnnotationControlCharacterFactory<?> annotationControlCharacterFactory : AnnotationCharacters.getFactories()) {
-            text = splitByControlCharacter(annotationControlCharacterFactory, text);
+            factories.add(annotationControlCharacterFactory);
         }
-
-        text = splitByControlCharacter(IndentCharacters.INDENT_FACTORY, text);
-
-        text = unescapeBackslash(text);
-
-        return text;
+        factories.add(IndentCharacters.INDENT_FACTORY);
+        return factories;
     }
 
     /**
@@ -344,17 +311,4 @@ public class TextFlowUtil {
         return result;
     }
 
-    private static Iterable<CharSequence> unescapeBackslash(final Iterable<CharSequence> chars) {
-        List<CharSequence> result = new ArrayList<CharSequence>();
-        for (CharSequence current : chars) {
-            if (current instanceof String) {
-                result.add(ControlCharacters
-                        .unescapeBackslash((String) current));
-            } else {
-                result.add(current);
-            }
-        }
-        return result;
-    }
-
 }
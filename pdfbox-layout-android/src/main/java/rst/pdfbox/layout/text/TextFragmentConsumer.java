@@ -0,0 +1,17 @@
+package rst.pdfbox.layout.text;
+
+import java.io.IOException;
+
+/**
+ * Receives the text fragments created by a {@link MarkupStreamParser}.
+ */
+public interface TextFragmentConsumer {
+
+    /**
+     * Called for every created fragment, in order of the markup.
+     *
+     * @param fragment the created fragment.
+     * @throws IOException by pdfbox
+     */
+    void consume(TextFragment fragment) throws IOException;
+}
@@ -0,0 +1,502 @@
+package rst.pdfbox.layout.text;
+
+import com.tom_roush.pdfbox.pdmodel.PDPageContentStream;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import rst.pdfbox.layout.util.TrackingContentStream;
+import rst.pdfbox.layout.util.WordBreakerFactory;
+
+/**
+ * The immutable result of word-wrapping a text sequence into lines for a given
+ * max width and line spacing. Width and height are calculated once, so a
+ * layout may be queried, divided and drawn without wrapping the text again.
+ */
+public final class TextLayout {
+
+    private final int version;
+    private final float maxWidth;
+    private final float lineSpacing;
+    private final boolean applyLineSpacingToFirstLine;
+
+    private final List<TextLine> lines;
+    /**
+     * All lines of the layout this one has been sliced from, so slices of
+     * slices do not nest.
+     */
+    private final List<TextLine> allLines;
+    /**
+     * The height of the lines before index <code>i</code> including the line
+     * spacing, so the last entry is the height of the layout. The array is
+     * shared by all slices of a layout, see {@link #offset}. The sums are
+     * kept in double precision, since slice heights are calculated as the
+     * difference of two sums.
+     */
+    private double[] heightSums;
+    /**
+     * The width of the widest line before index <code>i</code>, so the last
+     * entry is the width of the layout.
+     */
+    private float[] widthMaxima;
+    /**
+     * Indicates if the line spacing has been applied to the first line in the
+     * height sums.
+     */
+    private final boolean heightSumsApplyLineSpacingToFirstLine;
+    /**
+     * The index of the first line of this layout in the (shared) height sums
+     * and width maxima.
+     */
+    private final int offset;
+    /**
+     * The correction of the height of the first line, if the line spacing
+     * applied to it differs from the height sums.
+     */
+    private final float firstLineCorrection;
+    /**
+     * The (lazily calculated) width of a slice.
+     */
+    private float width = Float.NaN;
+
+    /**
+     * Checkpoints are the positions right after a (hard) {@link NewLine},
+     * where wrapping may be resumed without knowing any text before: the
+     * index of the fragment following the new line, the index of the line
+     * following the new line, and the indentation in effect.
+     */
+    private int[] checkpointFragments;
+    private int[] checkpointLines;
+    private float[] checkpointIndents;
+    private int checkpointCount;
+
+    /**
+     * Word-wraps the given text into a layout.
+     *
+     * @param text                        the text to layout.
+     * @param maxWidth                    if &gt; 0, the text may be word-wrapped to match the width.
+     * @param lineSpacing                 the line spacing factor.
+     * @param applyLineSpacingToFirstLine indicates if the line spacing should be applied to the first
+     *                                    line also.
+     * @throws IOException by pdfbox
+     */
+    public TextLayout(final TextSequence text, final float maxWidth,
+                      final float lineSpacing, final boolean applyLineSpacingToFirstLine)
+            throws IOException {
+        this(-1, text, maxWidth, lineSpacing, applyLineSpacingToFirstLine);
+    }
+
+    /**
+     * Word-wraps the given text into a layout.
+     *
+     * @param version                     the version of the text the layout is created for.
+     * @param text                        the text to layout.
+     * @param maxWidth                    if &gt; 0, the text may be word-wrapped to match the width.
+     * @param lineSpacing                 the line spacing factor.
+     * @param applyLineSpacingToFirstLine indicates if the line spacing should be applied to the first
+     *                                    line also.
+     * @throws IOException by pdfbox
+     */
+    TextLayout(final int version, final TextSequence text,
+               final float maxWidth, final float lineSpacing,
+               final boolean applyLineSpacingToFirstLine) throws IOException {
+        this.version = version;
+        this.maxWidth = maxWidth;
+        this.lineSpacing = lineSpacing;
+        this.applyLineSpacingToFirstLine = applyLineSpacingToFirstLine;
+        this.heightSumsApplyLineSpacingToFirstLine = applyLineSpacingToFirstLine;
+        this.offset = 0;
+        this.firstLineCorrection = 0;
+
+        List<TextLine> wrapped = new ArrayList<TextLine>();
+        heightSums = new double[16];
+        widthMaxima = new float[16];
+        checkpointFragments = new int[16];
+        checkpointLines = new int[16];
+        checkpointIndents = new float[16];
+        wrap(wrapped, new LineBreaker(text, maxWidth), 0);
+        this.lines = Collections.unmodifiableList(wrapped);
+        this.allLines = lines;
+    }
+
+    /**
+     * Re-wraps the text of a modified text flow, starting at the last
+     * checkpoint in front of the first modified fragment. All lines before
+     * that checkpoint are taken from the given previous layout.
+     *
+     * @param previous           the previous layout of the text.
+     * @param version            the version of the text the layout is created for.
+     * @param fragments          all fragments of the text.
+     * @param firstModifiedIndex the index of the first fragment that has been
+     *                           modified since the previous layout was created.
+     * @throws IOException by pdfbox
+     */
+    TextLayout(final TextLayout previous, final int version,
+               final List<TextFragment> fragments, final int firstModifiedIndex)
+            throws IOException {
+        this.version = version;
+        this.maxWidth = previous.maxWidth;
+        this.lineSpacing = previous.lineSpacing;
+        this.applyLineSpacingToFirstLine = previous.applyLineSpacingToFirstLine;
+        this.heightSumsApplyLineSpacingToFirstLine = applyLineSpacingToFirstLine;
+        this.offset = 0;
+        this.firstLineCorrection = 0;
+
+        int checkpoint = -1;
+        if (previous.offset == 0) {
+            checkpoint = previous.findCheckpoint(firstModifiedIndex);
+        }
+        int fragmentIndex = 0;
+        int lineIndex = 0;
+        float indentation = 0;
+        if (checkpoint >= 0) {
+            fragmentIndex = previous.checkpointFragments[checkpoint];
+            lineIndex = previous.checkpointLines[checkpoint];
+            indentation = previous.checkpointIndents[checkpoint];
+        }
+
+        List<TextLine> wrapped = new ArrayList<TextLine>(
+                previous.lines.subList(0, lineIndex));
+        int capacity = Math.max(16, previous.lines.size() + 1);
+        heightSums = new double[capacity];
+        widthMaxima = new float[capacity];
+        if (checkpoint >= 0) {
+            System.arraycopy(previous.heightSums, 0, heightSums, 0,
+                    lineIndex + 1);
+            System.arraycopy(previous.widthMaxima, 0, widthMaxima, 0,
+                    lineIndex + 1);
+        }
+        checkpointCount = checkpoint + 1;
+        capacity = Math.max(16, previous.checkpointCount);
+        checkpointFragments = copyOf(previous.checkpointFragments,
+                checkpointCount, capacity);
+        checkpointLines = copyOf(previous.checkpointLines, checkpointCount,
+                capacity);
+        checkpointIndents = copyOf(previous.checkpointIndents,
+                checkpointCount, capacity);
+
+        wrap(wrapped, new LineBreaker(fragments.listIterator(fragmentIndex),
+                maxWidth, WordBreakerFactory.getIndexedWordBreaker(),
+                indentation), fragmentIndex);
+        this.lines = Collections.unmodifiableList(wrapped);
+        this.allLines = lines;
+    }
+
+    /**
+     * Creates a slice of the given layout, which shares the lines and metrics
+     * of its source.
+     *
+     * @param source                      the layout to slice.
+     * @param from                        the index of the first line of the slice.
+     * @param to                          the index after the last line of the slice.
+     * @param version                     the version of the text the slice is created for.
+     * @param applyLineSpacingToFirstLine indicates if the line spacing should be applied to the first
+     *                                    line of the slice.
+     * @throws IOException by pdfbox
+     */
+    TextLayout(final TextLayout source, final int from, final int to,
+               final int version, final boolean applyLineSpacingToFirstLine)
+            throws IOException {
+        this.version = version;
+        this.maxWidth = source.maxWidth;
+        this.lineSpacing = source.lineSpacing;
+        this.applyLineSpacingToFirstLine = applyLineSpacingToFirstLine;
+        this.heightSumsApplyLineSpacingToFirstLine = source.heightSumsApplyLineSpacingToFirstLine;
+        this.offset = source.offset + from;
+        this.allLines = source.allLines;
+        this.lines = allLines.subList(offset, offset + to - from);
+        this.heightSums = source.heightSums;
+        this.widthMaxima = source.widthMaxima;
+        this.checkpointFragments = new int[0];
+        this.checkpointLines = new int[0];
+        this.checkpointIndents = new float[0];
+
+        boolean applied = offset > 0 || heightSumsApplyLineSpacingToFirstLine;
+        float correction = 0;
+        if (from < to && applied != applyLineSpacingToFirstLine) {
+            correction = lines.get(0).getHeight() * (lineSpacing - 1);
+            if (applied) {
+                correction = -correction;
+            }
+        }
+        this.firstLineCorrection = correction;
+    }
+
+    /**
+     * Wraps the lines emitted by the given breaker, recording the metrics and
+     * checkpoints.
+     *
+     * @param wrapped        the list to add the lines to.
+     * @param breaker        the line breaker.
+     * @param fragmentOffset the index of the first fragment consumed by the
+     *                       breaker.
+     * @throws IOException by pdfbox
+     */
+    private void wrap(final List<TextLine> wrapped, final LineBreaker breaker,
+                      final int fragmentOffset) throws IOException {
+        TextLine line = breaker.nextLine();
+        while (line != null) {
+            int index = wrapped.size();
+            wrapped.add(line);
+            if (index + 1 >= heightSums.length) {
+                heightSums = copyOf(heightSums, index + 1,
+                        heightSums.length * 2);
+                widthMaxima = copyOf(widthMaxima, index + 1,
+                        widthMaxima.length * 2);
+            }
+            heightSums[index + 1] = heightSums[index]
+                    + TextSequenceUtil.getLineHeight(line, index, lineSpacing,
+                    applyLineSpacingToFirstLine);
+            widthMaxima[index + 1] = Math.max(widthMaxima[index],
+                    line.getWidth());
+
+            NewLine newLine = line.getNewLine();
+            if (newLine != null && !(newLine instanceof WrappingNewLine)) {
+                addCheckpoint(fragmentOffset + breaker.getConsumedFragments(),
+                        index + 1, breaker.getIndentation());
+            }
+            line = breaker.nextLine();
+        }
+    }
+
+    private void addCheckpoint(final int fragmentIndex, final int lineIndex,
+                               final float indentation) {
+        if (checkpointCount == checkpointFragments.length) {
+            int capacity = checkpointCount * 2;
+            checkpointFragments = copyOf(checkpointFragments,
+                    checkpointCount, capacity);
+            checkpointLines = copyOf(checkpointLines, checkpointCount,
+                    capacity);
+            checkpointIndents = copyOf(checkpointIndents, checkpointCount,
+                    capacity);
+        }
+        checkpointFragments[checkpointCount] = fragmentIndex;
+        checkpointLines[checkpointCount] = lineIndex;
+        checkpointIndents[checkpointCount] = indentation;
+        ++checkpointCount;
+    }
+
+    /**
+     * Finds the last checkpoint that does not depend on the given fragment
+     * (or any following).
+     *
+     * @param fragmentIndex the index of the fragment.
+     * @return the index of the checkpoint, or -1 if there is none.
+     */
+    private int findCheckpoint(final int fragmentIndex) {
+        int low = 0;
+        int high = checkpointCount - 1;
+        int result = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (checkpointFragments[mid] <= fragmentIndex) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    private static int[] copyOf(final int[] array, final int length,
+                                final int capacity) {
+        int[] copy = new int[capacity];
+        System.arraycopy(array, 0, copy, 0, length);
+        return copy;
+    }
+
+    private static double[] copyOf(final double[] array, final int length,
+                                   final int capacity) {
+        double[] copy = new double[capacity];
+        System.arraycopy(array, 0, copy, 0, length);
+        return copy;
+    }
+
+    private static float[] copyOf(final float[] array, final int length,
+                                  final int capacity) {
+        float[] copy = new float[capacity];
+        System.arraycopy(array, 0, copy, 0, length);
+        return copy;
+    }
+
+    /**
+     * Indicates if this layout has been created for the given parameters.
+     *
+     * @param version                     the version of the text.
+     * @param maxWidth                    the max width.
+     * @param lineSpacing                 the line spacing factor.
+     * @param applyLineSpacingToFirstLine indicates if the line spacing should be applied to the first
+     *                                    line also.
+     * @return <code>true</code> if the layout may be reused.
+     */
+    boolean isLayoutOf(final int version, final float maxWidth,
+                       final float lineSpacing, final boolean applyLineSpacingToFirstLine) {
+        return this.version == version
+                && Float.floatToIntBits(this.maxWidth) == Float
+                .floatToIntBits(maxWidth)
+                && Float.floatToIntBits(this.lineSpacing) == Float
+                .floatToIntBits(lineSpacing)
+                && this.applyLineSpacingToFirstLine == applyLineSpacingToFirstLine;
+    }
+
+    /**
+     * @return the version of the text the layout has been created for.
+     */
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the max width the text has been wrapped to.
+     */
+    public float getMaxWidth() {
+        return maxWidth;
+    }
+
+    /**
+     * @return the line spacing factor.
+     */
+    public float getLineSpacing() {
+        return lineSpacing;
+    }
+
+    /**
+     * @return <code>true</code> if the line spacing is applied to the first
+     * line.
+     */
+    public boolean isApplyLineSpacingToFirstLine() {
+        return applyLineSpacingToFirstLine;
+    }
+
+    /**
+     * @return the (unmodifiable) wrapped lines.
+     */
+    public List<TextLine> getLines() {
+        return lines;
+    }
+
+    /**
+     * @return the width of the widest line.
+     */
+    public float getWidth() throws IOException {
+        if (offset == 0) {
+            return widthMaxima[lines.size()];
+        }
+        if (Float.isNaN(width)) {
+            float max = 0;
+            for (TextLine line : lines) {
+                max = Math.max(max, line.getWidth());
+            }
+            width = max;
+        }
+        return width;
+    }
+
+    /**
+     * @return the height of all lines including the line spacing.
+     */
+    public float getHeight() {
+        return getHeight(lines.size());
+    }
+
+    /**
+     * Returns the height of the first lines of this layout.
+     *
+     * @param lineCount the number of lines.
+     * @return the height of the lines including the line spacing.
+     */
+    public float getHeight(final int lineCount) {
+        if (lineCount == 0) {
+            return 0;
+        }
+        return (float) (heightSums[offset + lineCount] - heightSums[offset])
+                + firstLineCorrection;
+    }
+
+    /**
+     * Finds the number of lines that fit into the given height by a binary
+     * search over the line heights.
+     *
+     * @param maxHeight the height to fit.
+     * @return the number of (leading) lines that fit.
+     */
+    public int getFittingLines(final float maxHeight) {
+        int low = 0;
+        int high = lines.size();
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (getHeight(mid) <= maxHeight) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Indicates if this layout may be sliced for text using the given
+     * parameters.
+     *
+     * @param maxWidth    the max width.
+     * @param lineSpacing the line spacing factor.
+     * @return <code>true</code> if the lines have been wrapped using the same
+     * parameters.
+     */
+    boolean isSliceableFor(final float maxWidth, final float lineSpacing) {
+        return Float.floatToIntBits(this.maxWidth) == Float
+                .floatToIntBits(maxWidth)
+                && Float.floatToIntBits(this.lineSpacing) == Float
+                .floatToIntBits(lineSpacing);
+    }
+
+    /**
+     * Draws the lines to the PDPageContentStream at the given position. All
+     * lines are drawn in one text object, each one positioned relative to its
+     * predecessor.
+     *
+     * @param contentStream the stream to draw to
+     * @param upperLeft     the position of the start of the first line.
+     * @param alignment     how to align the text lines.
+     * @param drawListener  the listener to
+     *                      {@link DrawListener#drawn(Object, Position, float, float)
+     *                      notify} on drawn objects.
+     * @throws IOException by pdfbox
+     */
+    public void drawText(final PDPageContentStream contentStream,
+                         final Position upperLeft, final Alignment alignment,
+                         final DrawListener drawListener) throws IOException {
+        float maxLineWidth = Math.max(maxWidth, getWidth());
+        Position position = upperLeft;
+        float lastLineHeight = 0;
+        TrackingContentStream stream = new TrackingContentStream(contentStream);
+        stream.saveGraphicsState();
+        stream.beginText();
+        for (int i = 0; i < lines.size(); i++) {
+            boolean applyLineSpacing = i > 0 || applyLineSpacingToFirstLine;
+            TextLine textLine = lines.get(i);
+            float currentLineHeight = textLine.getHeight();
+            float lead = lastLineHeight;
+            if (applyLineSpacing) {
+                lead += (currentLineHeight * (lineSpacing - 1));
+            }
+            lastLineHeight = currentLineHeight;
+            position = position.add(0, -lead);
+            textLine.drawInTextObject(stream, position, alignment,
+                    maxLineWidth, drawListener);
+        }
+        stream.endText();
+        stream.restoreGraphicsState();
+    }
+
+    @Override
+    public String toString() {
+        return "TextLayout [maxWidth=" + maxWidth + ", lineSpacing="
+                + lineSpacing + ", lines=" + lines.size() + ", height="
+                + getHeight() + "]";
+    }
+
+}
@@ -1,52 +1,72 @@
 package rst.pdfbox.layout.text;
 
 import com.tom_roush.pdfbox.pdmodel.PDPageContentStream;
-import com.tom_roush.pdfbox.util.Matrix;
+import com.tom_roush.pdfbox.pdmodel.font.PDSimpleFont;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.NoSuchElementException;
 
-import rst.pdfbox.layout.util.ColorConverter;
+import rst.pdfbox.layout.util.TrackingContentStream;
 
 /**
  * A text of line containing only {@link StyledText}s. It may be terminated by a
  * {@link #getNewLine() new line}.
+ * <p>
+ * Internally the line is stored as runs, where each run is a range of the text
+ * of a styled text. So word-wrapping a text into lines does not need to
+ * derive new styled texts for every word. Styled texts for the runs are only
+ * created on demand, e.g. by {@link #getStyledTexts()}.
  */
 public class TextLine implements TextSequence {
 
     /**
-     * The font ascent.
+     * Run flag indicating that the left margin of the fragment applies.
      */
-    private static final String ASCENT = "ascent";
+    static final int LEFT_MARGIN = 1;
     /**
-     * The font height.
+     * Run flag indicating that the right margin of the fragment applies.
      */
-    private static final String HEIGHT = "height";
+    static final int RIGHT_MARGIN = 2;
     /**
-     * The text width.
+     * Run flags of a run covering the complete fragment.
      */
-    private static final String WIDTH = "width";
+    static final int BOTH_MARGINS = LEFT_MARGIN | RIGHT_MARGIN;
+    /**
+     * Run flag indicating that a hyphen is appended to the run.
+     */
+    static final int HYPHEN = 4;
+    /**
+     * The hyphen appended to a hyphenated run.
+     */
+    static final String HYPHEN_TEXT = "-";
 
-    private final List<StyledText> styledTextList = new ArrayList<StyledText>();
-    private NewLine newLine;
-    private Map<String, Object> cache = new HashMap<String, Object>();
+    private static final int INITIAL_CAPACITY = 8;
 
-    private void clearCache() {
-        cache.clear();
-    }
+    private StyledText[] fragments = new StyledText[INITIAL_CAPACITY];
+    private int[] replacedStarts = new int[INITIAL_CAPACITY];
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] ends = new int[INITIAL_CAPACITY];
+    private int[] flags = new int[INITIAL_CAPACITY];
+    private float[] widths = new float[INITIAL_CAPACITY];
+    private int size;
 
-    private void setCachedValue(final String key, Object value) {
-        cache.put(key, value);
-    }
+    private NewLine newLine;
 
-    @SuppressWarnings("unchecked")
-    private <T> T getCachedValue(final String key, Class<T> type) {
-        return (T) cache.get(key);
+    /**
+     * The cached (calculated) width, height and ascent.
+     */
+    private float width = Float.NaN;
+    private float height = Float.NaN;
+    private float ascent = Float.NaN;
+
+    private void clearCache() {
+        width = Float.NaN;
+        height = Float.NaN;
+        ascent = Float.NaN;
     }
 
     /**
@@ -55,8 +75,8 @@ public class TextLine implements TextSequence {
      * @param fragment the fagment to add.
      */
     public void add(final StyledText fragment) {
-        styledTextList.add(fragment);
-        clearCache();
+        add(fragment, 0, 0, fragment.getText().length(), BOTH_MARGINS,
+                Float.NaN);
     }
 
     /**
@@ -65,11 +85,178 @@ public class TextLine implements TextSequence {
      * @param textLine the text line to add.
      */
     public void add(final TextLine textLine) {
-        for (StyledText fragment : textLine.getStyledTexts()) {
-            add(fragment);
+        for (int index = 0; index < textLine.size; ++index) {
+            add(textLine.fragments[index], textLine.replacedStarts[index],
+                    textLine.starts[index], textLine.ends[index],
+                    textLine.flags[index], textLine.widths[index]);
         }
     }
 
+    /**
+     * Adds a run, which is a range of the text of the given fragment.
+     *
+     * @param fragment      the fragment the run belongs to.
+     * @param replacedStart the start of any leading whitespace that has been
+     *                      removed by word-wrapping, or <code>start</code>.
+     * @param start         the index of the first character of the run.
+     * @param end           the index after the last character of the run.
+     * @param runFlags      the margin and hyphen flags of the run.
+     * @param runWidth      the width of the run including its margins, or
+     *                      <code>NaN</code> if not yet measured.
+     */
+    void add(final StyledText fragment, final int replacedStart,
+             final int start, final int end, final int runFlags,
+             final float runWidth) {
+        if (size == fragments.length) {
+            grow();
+        }
+        fragments[size] = fragment;
+        replacedStarts[size] = replacedStart;
+        starts[size] = start;
+        ends[size] = end;
+        flags[size] = runFlags;
+        widths[size] = runWidth;
+        ++size;
+        clearCache();
+    }
+
+    /**
+     * Removes the last run (if any).
+     */
+    void removeLast() {
+        if (size > 0) {
+            --size;
+            fragments[size] = null;
+            clearCache();
+        }
+    }
+
+    private void grow() {
+        int capacity = fragments.length * 2;
+        StyledText[] newFragments = new StyledText[capacity];
+        System.arraycopy(fragments, 0, newFragments, 0, size);
+        fragments = newFragments;
+        replacedStarts = copyOf(replacedStarts, capacity);
+        starts = copyOf(starts, capacity);
+        ends = copyOf(ends, capacity);
+        flags = copyOf(flags, capacity);
+        float[] newWidths = new float[capacity];
+        System.arraycopy(widths, 0, newWidths, 0, size);
+        widths = newWidths;
+    }
+
+    private int[] copyOf(final int[] array, final int capacity) {
+        int[] copy = new int[capacity];
+        System.arraycopy(array, 0, copy, 0, size);
+        return copy;
+    }
+
+    /**
+     * @return the number of runs in this line.
+     */
+    int getRunCount() {
+        return size;
+    }
+
+    /**
+     * @param index the index of the run.
+     * @return the fragment the run belongs to.
+     */
+    StyledText getRunFragment(final int index) {
+        return fragments[index];
+    }
+
+    /**
+     * @param index the index of the run.
+     * @return the width of the run including its margins.
+     * @throws IOException by pdfbox
+     */
+    float getRunWidth(final int index) throws IOException {
+        if (Float.isNaN(widths[index])) {
+            StyledText fragment = fragments[index];
+            if (starts[index] == 0
+                    && ends[index] == fragment.getText().length()
+                    && flags[index] == BOTH_MARGINS) {
+                widths[index] = fragment.getWidth();
+            } else {
+                FontDescriptor fontDescriptor = fragment.getFontDescriptor();
+                widths[index] = fontDescriptor.getStringWidth(
+                        fragment.getText(), starts[index], ends[index])
+                        + getRunLeftMargin(index) + getRunRightMargin(index);
+                if ((flags[index] & HYPHEN) != 0) {
+                    widths[index] += fontDescriptor.getStringWidth(
+                            HYPHEN_TEXT, 0, 1);
+                }
+            }
+        }
+        return widths[index];
+    }
+
+    /**
+     * @param index the index of the run.
+     * @return the left margin of the run.
+     */
+    float getRunLeftMargin(final int index) {
+        return (flags[index] & LEFT_MARGIN) != 0 ? fragments[index]
+                .getLeftMargin() : 0;
+    }
+
+    /**
+     * @param index the index of the run.
+     * @return the right margin of the run.
+     */
+    float getRunRightMargin(final int index) {
+        return (flags[index] & RIGHT_MARGIN) != 0 ? fragments[index]
+                .getRightMargin() : 0;
+    }
+
+    /**
+     * @param index the index of the run.
+     * @return the text of the run, including any hyphen.
+     */
+    String getRunText(final int index) {
+        String text = fragments[index].getText();
+        if ((flags[index] & HYPHEN) != 0) {
+            return text.substring(starts[index], ends[index]) + HYPHEN_TEXT;
+        }
+        if (starts[index] == 0 && ends[index] == text.length()) {
+            return text;
+        }
+        return text.substring(starts[index], ends[index]);
+    }
+
+    /**
+     * Returns the styled text representing the run. The fragment itself is
+     * returned if the run covers it completely, otherwise a styled text is
+     * derived.
+     *
+     * @param index the index of the run.
+     * @return the styled text representing the run.
+     */
+    StyledText getRunStyledText(final int index) {
+        StyledText fragment = fragments[index];
+        if (starts[index] == 0 && ends[index] == fragment.getText().length()
+                && flags[index] == BOTH_MARGINS) {
+            return fragment;
+        }
+        return fragment.inheritAttributes(getRunText(index),
+                getRunLeftMargin(index), getRunRightMargin(index));
+    }
+
+    /**
+     * @param index the index of the run.
+     * @return the whitespace replaced by word-wrapping in front of the run, or
+     * <code>null</code> if there is none.
+     */
+    ReplacedWhitespace getRunReplacedWhitespace(final int index) {
+        if (replacedStarts[index] == starts[index]) {
+            return null;
+        }
+        return new ReplacedWhitespace(fragments[index].getText().substring(
+                replacedStarts[index], starts[index]),
+                fragments[index].getFontDescriptor());
+    }
+
     /**
      * @return the terminating new line, may be <code>null</code>.
      */
@@ -91,12 +278,16 @@ public class TextLine implements TextSequence {
      * @return the styled texts building up this line.
      */
     public List<StyledText> getStyledTexts() {
-        return Collections.unmodifiableList(styledTextList);
+        List<StyledText> styledTexts = new ArrayList<StyledText>(size);
+        for (int index = 0; index < size; ++index) {
+            styledTexts.add(getRunStyledText(index));
+        }
+        return Collections.unmodifiableList(styledTexts);
     }
 
     @Override
     public Iterator<TextFragment> iterator() {
-        return new TextLineIterator(styledTextList.iterator(), newLine);
+        return new TextLineIterator(this);
     }
 
     /**
@@ -104,31 +295,35 @@ public class TextLine implements TextSequence {
      * new line.
      */
     public boolean isEmpty() {
-        return styledTextList.isEmpty() && newLine == null;
+        return size == 0 && newLine == null;
     }
 
     @Override
     public float getWidth() throws IOException {
-        Float width = getCachedValue(WIDTH, Float.class);
-        if (width == null) {
-            width = 0f;
-            for (TextFragment fragment : this) {
-                width += fragment.getWidth();
+        if (Float.isNaN(width)) {
+            float sum = 0;
+            for (int index = 0; index < size; ++index) {
+                sum += getRunWidth(index);
             }
-            setCachedValue(WIDTH, width);
+            if (newLine != null) {
+                sum += newLine.getWidth();
+            }
+            width = sum;
         }
         return width;
     }
 
     @Override
     public float getHeight() throws IOException {
-        Float height = getCachedValue(HEIGHT, Float.class);
-        if (height == null) {
-            height = 0f;
-            for (TextFragment fragment : this) {
-                height = Math.max(height, fragment.getHeight());
+        if (Float.isNaN(height)) {
+            float max = 0;
+            for (int index = 0; index < size; ++index) {
+                max = Math.max(max, fragments[index].getHeight());
+            }
+            if (newLine != null) {
+                max = Math.max(max, newLine.getHeight());
             }
-            setCachedValue(HEIGHT, height);
+            height = max;
         }
         return height;
     }
@@ -138,16 +333,16 @@ public class TextLine implements TextSequence {
      * @throws IOException by pdfbox.
      */
     protected float getAscent() throws IOException {
-        Float ascent = getCachedValue(ASCENT, Float.class);
-        if (ascent == null) {
-            ascent = 0f;
-            for (TextFragment fragment : this) {
-                float currentAscent = fragment.getFontDescriptor().getSize()
-                        * fragment.getFontDescriptor().getFont()
-                        .getFontDescriptor().getAscent() / 1000;
-                ascent = Math.max(ascent, currentAscent);
+        if (Float.isNaN(ascent)) {
+            float max = 0;
+            for (int index = 0; index < size; ++index) {
+                max = Math.max(max, fragments[index].getFontDescriptor()
+                        .getAscent());
+            }
+            if (newLine != null) {
+                max = Math.max(max, newLine.getFontDescriptor().getAscent());
             }
-            setCachedValue(ASCENT, ascent);
+            ascent = max;
         }
         return ascent;
     }
@@ -161,70 +356,166 @@ public class TextLine implements TextSequence {
     public void drawAligned(PDPageContentStream contentStream, Position upperLeft,
                             Alignment alignment, float availableLineWidth,
                             DrawListener drawListener) throws IOException {
-        contentStream.saveGraphicsState();
-        contentStream.beginText();
+        drawAligned(new TrackingContentStream(contentStream), upperLeft,
+                alignment, availableLineWidth, drawListener);
+    }
+
+    /**
+     * Draws this line in a text object of its own, where font and color are
+     * only set if they differ from the state tracked by the given stream.
+     *
+     * @param stream             the stream to draw to.
+     * @param upperLeft          the upper left position of the line.
+     * @param alignment          the alignment of the line.
+     * @param availableLineWidth the width to align the line in.
+     * @param drawListener       the listener to notify on drawn objects.
+     * @throws IOException by pdfbox.
+     */
+    public void drawAligned(TrackingContentStream stream, Position upperLeft,
+                            Alignment alignment, float availableLineWidth,
+                            DrawListener drawListener) throws IOException {
+        stream.saveGraphicsState();
+        stream.beginText();
+        drawInTextObject(stream, upperLeft, alignment, availableLineWidth,
+                drawListener);
+        stream.endText();
+        stream.restoreGraphicsState();
+    }
 
+    /**
+     * Draws this line into the current text object of the given stream, so
+     * multiple lines may share one text object. The line is positioned
+     * relative to the text line drawn before.
+     *
+     * @param stream             the stream to draw to.
+     * @param upperLeft          the upper left position of the line.
+     * @param alignment          the alignment of the line.
+     * @param availableLineWidth the width to align the line in.
+     * @param drawListener       the listener to notify on drawn objects.
+     * @throws IOException by pdfbox.
+     */
+    void drawInTextObject(TrackingContentStream stream, Position upperLeft,
+                          Alignment alignment, float availableLineWidth,
+                          DrawListener drawListener) throws IOException {
+        PDPageContentStream contentStream = stream.getContentStream();
         float x = upperLeft.getX();
         float y = upperLeft.getY() - getAscent(); // the baseline
         float offset = TextSequenceUtil.getOffset(this, availableLineWidth, alignment);
         x += offset;
 
-        contentStream.setTextMatrix(new Matrix(1f, 0f, 0f, 1f, x, y));
+        stream.newLineAt(x, y);
+        // extra space either between runs, or added to each blank by Tw
         float extraWordSpacing = 0;
+        float wordSpacing = 0;
         if (alignment == Alignment.Justify && (getNewLine() instanceof WrappingNewLine)) {
-            extraWordSpacing = (availableLineWidth - getWidth()) / (styledTextList.size() - 1);
+            int blanks = countBlanksIfSimpleFonts();
+            if (blanks > 0) {
+                wordSpacing = Math.max(0,
+                        (availableLineWidth - getWidth()) / blanks);
+            } else {
+                extraWordSpacing = (availableLineWidth - getWidth()) / (size - 1);
+            }
         }
+        stream.setWordSpacing(wordSpacing);
 
-        FontDescriptor lastFontDesc = null;
         float lastBaselineOffset = 0;
-        Integer lastColor = null;
         float gap = 0;
-        for (StyledText styledText : styledTextList) {
-            if (!styledText.getFontDescriptor().equals(lastFontDesc)) {
-                lastFontDesc = styledText.getFontDescriptor();
-                contentStream.setFont(lastFontDesc.getFont(),
-                        lastFontDesc.getSize());
-            }
-            if (!styledText.getColor().equals(lastColor)) {
-                lastColor = styledText.getColor();
-                contentStream.setNonStrokingColor(ColorConverter.convert(lastColor));
-            }
-            if (styledText.getLeftMargin() > 0) {
-                gap += styledText.getLeftMargin();
+        // adjacent runs of the same style are shown at once
+        StringBuilder pending = new StringBuilder();
+        StyledText pendingStyle = null;
+        for (int index = 0; index < size; ++index) {
+            StyledText fragment = fragments[index];
+            float leftMargin = getRunLeftMargin(index);
+            float rightMargin = getRunRightMargin(index);
+            if (leftMargin > 0) {
+                gap += leftMargin;
             }
 
-            boolean moveBaseline = styledText.getBaselineOffset() != lastBaselineOffset;
-            if (moveBaseline || gap > 0) {
-                float baselineDelta = lastBaselineOffset - styledText.getBaselineOffset();
-                lastBaselineOffset = styledText.getBaselineOffset();
-                contentStream.newLineAtOffset(gap, baselineDelta);
+            boolean moveBaseline = fragment.getBaselineOffset() != lastBaselineOffset;
+            boolean move = moveBaseline || gap > 0;
+            if (pending.length() > 0
+                    && (move || !hasSameStyle(pendingStyle, fragment))) {
+                contentStream.showText(pending.toString());
+                pending.setLength(0);
+            }
+            stream.setFont(fragment.getFontDescriptor().getFont(),
+                    fragment.getFontDescriptor().getSize());
+            stream.setNonStrokingColor(fragment.getColor());
+            if (move) {
+                lastBaselineOffset = fragment.getBaselineOffset();
                 x += gap;
+                stream.moveTextTo(x, y - lastBaselineOffset);
             }
-            if (styledText.getText().length() > 0) {
-                contentStream.showText(styledText.getText());
+            if (ends[index] > starts[index]) {
+                pending.append(fragment.getText(), starts[index], ends[index]);
+                if ((flags[index] & HYPHEN) != 0) {
+                    pending.append(HYPHEN_TEXT);
+                }
+                pendingStyle = fragment;
             }
 
+            // including the space added to the blanks of the run by Tw
+            float drawnWidth = getRunWidth(index) - leftMargin - rightMargin;
+            if (wordSpacing > 0) {
+                drawnWidth += wordSpacing * countBlanks(index);
+            }
             if (drawListener != null) {
-                float currentUpperLeft = y + styledText.getAsent();
-                drawListener.drawn(styledText,
-                        new Position(x, currentUpperLeft),
-                        styledText.getWidthWithoutMargin(),
-                        styledText.getHeight());
+                float currentUpperLeft = y + fragment.getAsent();
+                drawListener.drawn(getRunStyledText(index),
+                        new Position(x, currentUpperLeft), drawnWidth,
+                        fragment.getHeight());
             }
-            x += styledText.getWidthWithoutMargin();
+            x += drawnWidth;
 
             gap = extraWordSpacing;
-            if (styledText.getRightMargin() > 0) {
-                gap += styledText.getRightMargin();
+            if (rightMargin > 0) {
+                gap += rightMargin;
+            }
+        }
+        if (pending.length() > 0) {
+            contentStream.showText(pending.toString());
+        }
+    }
+
+    /**
+     * Counts the blanks word spacing applies to. Since <code>Tw</code> only
+     * applies to the single byte code 32, this is restricted to lines using
+     * simple fonts only.
+     *
+     * @return the number of blanks, or <code>0</code> if word spacing is not
+     * applicable.
+     */
+    private int countBlanksIfSimpleFonts() {
+        int blanks = 0;
+        for (int index = 0; index < size; ++index) {
+            if (!(fragments[index].getFontDescriptor().getFont() instanceof PDSimpleFont)) {
+                return 0;
             }
+            blanks += countBlanks(index);
         }
-        contentStream.endText();
-        contentStream.restoreGraphicsState();
+        return blanks;
+    }
+
+    private int countBlanks(final int index) {
+        String text = fragments[index].getText();
+        int blanks = 0;
+        for (int position = starts[index]; position < ends[index]; ++position) {
+            if (text.charAt(position) == ' ') {
+                ++blanks;
+            }
+        }
+        return blanks;
+    }
+
+    private static boolean hasSameStyle(final StyledText first,
+                                        final StyledText second) {
+        return first.getFontDescriptor().equals(second.getFontDescriptor())
+                && first.getColor().equals(second.getColor());
     }
 
     @Override
     public String toString() {
-        return "TextLine [styledText=" + styledTextList + ", newLine="
+        return "TextLine [styledText=" + getStyledTexts() + ", newLine="
                 + newLine + "]";
     }
 
@@ -233,35 +524,37 @@ public class TextLine implements TextSequence {
      */
     private static class TextLineIterator implements Iterator<TextFragment> {
 
-        private Iterator<StyledText> styledText;
+        private final TextLine line;
+        private int index;
         private NewLine newLine;
 
         /**
-         * Creates an iterator of the given styled texts with an optional
+         * Creates an iterator of the runs of the given line with its optional
          * trailing new line.
          *
-         * @param styledText the text fragments to iterate.
-         * @param newLine    the optional trailing new line.
+         * @param line the line to iterate.
          */
-        public TextLineIterator(Iterator<StyledText> styledText, NewLine newLine) {
+        public TextLineIterator(TextLine line) {
             super();
-            this.styledText = styledText;
-            this.newLine = newLine;
+            this.line = line;
+            this.newLine = line.newLine;
         }
 
         @Override
         public boolean hasNext() {
-            return styledText.hasNext() || newLine != null;
+            return index < line.size || newLine != null;
         }
 
         @Override
         public TextFragment next() {
             TextFragment next = null;
-            if (styledText.hasNext()) {
-                next = styledText.next();
+            if (index < line.size) {
+                next = line.getRunStyledText(index++);
             } else if (newLine != null) {
                 next = newLine;
                 newLine = null;
+            } else {
+                throw new NoSuchElementException();
             }
             return next;
         }
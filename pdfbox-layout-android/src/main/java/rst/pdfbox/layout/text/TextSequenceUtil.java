@@ -8,8 +8,6 @@ import java.util.List;
 
 import rst.pdfbox.layout.elements.Dividable.Divided;
 import rst.pdfbox.layout.elements.Paragraph;
-import rst.pdfbox.layout.util.Pair;
-import rst.pdfbox.layout.util.WordBreakerFactory;
 
 /**
  * Utility methods for dealing with text sequences.
@@ -55,13 +53,14 @@ public class TextSequenceUtil {
      */
     public static Divided divide(final TextSequence text, final float maxWidth,
                                  final float maxHeight) throws IOException {
-        TextFlow wrapped = wordWrap(text, maxWidth);
-        List<TextLine> lines = getLines(wrapped);
-
         Paragraph first = new Paragraph();
         Paragraph tail = new Paragraph();
+        float lineSpacing = TextFlow.DEFAULT_LINE_SPACING;
+        boolean applyLineSpacingToFirstLine = true;
         if (text instanceof TextFlow) {
             TextFlow flow = (TextFlow) text;
+            lineSpacing = flow.getLineSpacing();
+            applyLineSpacingToFirstLine = flow.isApplyLineSpacingToFirstLine();
             first.setMaxWidth(flow.getMaxWidth());
             first.setLineSpacing(flow.getLineSpacing());
             tail.setMaxWidth(flow.getMaxWidth());
@@ -75,21 +74,31 @@ public class TextSequenceUtil {
             tail.setApplyLineSpacingToFirstLine(paragraph.isApplyLineSpacingToFirstLine());
         }
 
+        if (text instanceof TextFlow
+                && ((TextFlow) text).getMaxWidth() == maxWidth) {
+            // slice the cached layout at the last line fitting the height
+            TextLayout layout = ((TextFlow) text).getLayout();
+            int lineCount = layout.getLines().size();
+            int split = layout.getFittingLines(maxHeight);
+            ((TextFlow) first).setLines(layout, 0, split);
+            ((TextFlow) tail).setLines(layout, split, lineCount);
+            return new Divided(first, tail);
+        }
+
+        List<TextLine> lines = wordWrapToLines(text, maxWidth);
+        float height = 0;
         int index = 0;
-        do {
+        while (index < lines.size() && (index == 0 || height < maxHeight)) {
             TextLine line = lines.get(index);
+            float lineHeight = getLineHeight(line, index, lineSpacing,
+                    applyLineSpacingToFirstLine);
+            if (height + lineHeight > maxHeight) {
+                // line does not fit anymore
+                break;
+            }
+            height += lineHeight;
             first.add(line);
             ++index;
-        } while (index < lines.size() && first.getHeight() < maxHeight);
-
-        if (first.getHeight() > maxHeight) {
-            // remove last line
-            --index;
-            TextLine line = lines.get(index);
-            for (@SuppressWarnings("unused")
-                    TextFragment textFragment : line) {
-                first.removeLast();
-            }
         }
 
         for (int i = index; i < lines.size(); ++i) {
@@ -107,159 +116,24 @@ public class TextSequenceUtil {
      * @throws IOException by pdfbox
      */
     public static TextFlow wordWrap(final TextSequence text, final float maxWidth) throws IOException {
-
-        float indentation = 0;
         TextFlow result = new TextFlow();
-        float lineLength = indentation;
-        boolean isWrappedLine = false;
-        for (TextFragment fragment : text) {
-            if (fragment instanceof NewLine) {
-                isWrappedLine = fragment instanceof WrappingNewLine;
-                result.add(fragment);
-                lineLength = indentation;
-                if (indentation > 0) {
-                    result.add(new Indent(indentation).toStyledText());
-                }
-            } else if (fragment instanceof Indent) {
-                if (indentation > 0) {
-                    // reset indentation
-                    result.removeLast();
-                    indentation = 0;
-                }
-                indentation = fragment.getWidth();
-                lineLength = fragment.getWidth();
-                result.add(((Indent) fragment).toStyledText());
-            } else {
-                TextFlow words = splitWords(fragment);
-                for (TextFragment word : words) {
-                    WordWrapContext context = new WordWrapContext(word, lineLength, indentation, isWrappedLine);
-                    do {
-                        context = wordWrap(context, maxWidth, result);
-                    } while (context.isMoreToWrap());
-
-                    indentation = context.getIndentation();
-                    lineLength = context.getLineLength();
-                    isWrappedLine = context.isWrappedLine();
+        LineBreaker lines = new LineBreaker(text, maxWidth);
+        TextLine line = lines.nextLine();
+        while (line != null) {
+            for (int index = 0; index < line.getRunCount(); ++index) {
+                ReplacedWhitespace replaced = line
+                        .getRunReplacedWhitespace(index);
+                if (replaced != null) {
+                    result.add(replaced);
                 }
+                result.add(line.getRunStyledText(index));
             }
-        }
-        return result;
-    }
-
-    private static WordWrapContext wordWrap(final WordWrapContext context,
-                                            final float maxWidth, final TextFlow result) throws IOException {
-        TextFragment word = context.getWord();
-        TextFragment moreToWrap = null;
-        float indentation = context.getIndentation();
-        float lineLength = context.getLineLength();
-        boolean isWrappedLine = context.isWrappedLine();
-
-        if (isWrappedLine && lineLength == indentation) {
-            // start of line, replace leading blanks if
-            TextFragment[] replaceLeadingBlanks = replaceLeadingBlanks(word);
-            word = replaceLeadingBlanks[0];
-            if (replaceLeadingBlanks.length > 1) {
-                result.add(replaceLeadingBlanks[1]);
+            if (line.getNewLine() != null) {
+                result.add(line.getNewLine());
             }
+            line = lines.nextLine();
         }
-
-        FontDescriptor fontDescriptor = word.getFontDescriptor();
-        float length = word.getWidth();
-
-        if (maxWidth > 0 && lineLength + length > maxWidth) {
-            // word exceeds max width, so create new line
-
-            // break hard, if the text does not fit in a full (next) line
-            boolean breakHard = indentation + length > maxWidth;
-
-            Pair<TextFragment> brokenWord = breakWord(word, length, maxWidth
-                    - lineLength, maxWidth - indentation, breakHard);
-            if (brokenWord != null) {
-                // word is broken
-                word = brokenWord.getFirst();
-                length = word.getWidth();
-                moreToWrap = brokenWord.getSecond();
-
-                result.add(word);
-                if (length > 0) {
-                    lineLength += length;
-                }
-
-            } else {
-                if (lineLength == indentation) {
-                    // Begin of line and word could now be broke...
-                    // Well, so we have to use it as it is,
-                    // it won't get any better in the next line
-                    result.add(word);
-                    if (length > 0) {
-                        lineLength += length;
-                    }
-
-                } else {
-                    // give it another try in a new line, there
-                    // will be more space.
-                    moreToWrap = word;
-                    if (result.getLast() != null) {
-                        // since the current word is not used, take
-                        // font descriptor of last line. Otherwise
-                        // the line break might be to high
-                        fontDescriptor = result.getLast().getFontDescriptor();
-                    }
-                }
-            }
-
-            // wrap line only if not empty
-            if (lineLength > indentation) {
-                // and terminate it with a new line
-                result.add(new WrappingNewLine(fontDescriptor));
-                isWrappedLine = true;
-                if (indentation > 0) {
-                    result.add(new Indent(indentation).toStyledText());
-                }
-                lineLength = indentation;
-            }
-
-        } else {
-            // word fits, so just add it
-            result.add(word);
-            if (length > 0) {
-                lineLength += length;
-            }
-        }
-
-        return new WordWrapContext(moreToWrap, lineLength, indentation,
-                isWrappedLine);
-    }
-
-    /**
-     * Replaces leading whitespace by {@link ReplacedWhitespace}.
-     *
-     * @param word the fragment to replace
-     * @return
-     */
-    private static TextFragment[] replaceLeadingBlanks(final TextFragment word) {
-        String text = word.getText();
-        int splitIndex = 0;
-        while (splitIndex < text.length()
-                && Character.isWhitespace(text.charAt(splitIndex))) {
-            ++splitIndex;
-        }
-
-        if (splitIndex == 0) {
-            return new TextFragment[]{word};
-        } else {
-            ReplacedWhitespace whitespace = new ReplacedWhitespace(
-                    text.substring(0, splitIndex), word.getFontDescriptor());
-            StyledText newWord = null;
-            if (word instanceof StyledText) {
-                newWord = ((StyledText) word).inheritAttributes(text
-                        .substring(splitIndex));
-            } else {
-                newWord = new StyledText(text.substring(splitIndex),
-                        word.getFontDescriptor(), word.getColor());
-            }
-            return new TextFragment[]{newWord, whitespace};
-        }
+        return result;
     }
 
     /**
@@ -273,7 +147,9 @@ public class TextSequenceUtil {
     public static TextFlow deWrap(final TextSequence text) {
         TextFlow result = new TextFlow();
         for (TextFragment fragment : text) {
-            if (fragment instanceof WrappingNewLine) {
+            if (fragment instanceof HyphenatingNewLine) {
+                removeHyphen(result);
+            } else if (fragment instanceof WrappingNewLine) {
                 // skip
             } else if (fragment instanceof ReplacedWhitespace) {
                 result.add(((ReplacedWhitespace) fragment).toReplacedFragment());
@@ -289,8 +165,24 @@ public class TextSequenceUtil {
     }
 
     /**
-     * Convencience function that {@link #wordWrap(TextSequence, float)
-     * word-wraps} into {@link #getLines(TextSequence)}.
+     * Removes the hyphen appended to the last fragment by hyphenation.
+     *
+     * @param text the text to remove the hyphen from.
+     */
+    private static void removeHyphen(final TextFlow text) {
+        TextFragment last = text.getLast();
+        if (last instanceof StyledText
+                && last.getText().endsWith(TextLine.HYPHEN_TEXT)) {
+            text.removeLast();
+            String lastText = last.getText();
+            text.add(((StyledText) last).inheritAttributes(lastText.substring(
+                    0, lastText.length() - TextLine.HYPHEN_TEXT.length())));
+        }
+    }
+
+    /**
+     * Convencience function that word-wraps into a list of lines. See
+     * {@link LineBreaker}.
      *
      * @param text     the text to word-wrap.
      * @param maxWidth the max width to fit.
@@ -299,9 +191,14 @@ public class TextSequenceUtil {
      */
     public static List<TextLine> wordWrapToLines(final TextSequence text,
                                                  final float maxWidth) throws IOException {
-        TextFlow wrapped = wordWrap(text, maxWidth);
-        List<TextLine> lines = getLines(wrapped);
-        return lines;
+        List<TextLine> result = new ArrayList<TextLine>();
+        LineBreaker lines = new LineBreaker(text, maxWidth);
+        TextLine line = lines.nextLine();
+        while (line != null) {
+            result.add(line);
+            line = lines.nextLine();
+        }
+        return result;
     }
 
     /**
@@ -363,34 +260,6 @@ public class TextSequenceUtil {
                 toDeriveFrom.getColor(), 0, leftMargin, rightMargin);
     }
 
-    private static Pair<TextFragment> breakWord(TextFragment word,
-                                                float wordWidth, final float remainingLineWidth, float maxWidth,
-                                                boolean breakHard) throws IOException {
-
-        float leftMargin = 0;
-        float rightMargin = 0;
-        if (word instanceof StyledText) {
-            StyledText styledText = (StyledText) word;
-            leftMargin = styledText.getLeftMargin();
-            rightMargin = styledText.getRightMargin();
-        }
-
-        Pair<String> brokenWord = WordBreakerFactory.getWorkBreaker()
-                .breakWord(word.getText(), word.getFontDescriptor(),
-                        remainingLineWidth - leftMargin, breakHard);
-        if (brokenWord == null) {
-            return null;
-        }
-
-        // break at calculated index
-        TextFragment head = deriveFromExisting(word,
-                brokenWord.getFirst(), leftMargin, 0);
-        TextFragment tail = deriveFromExisting(word,
-                brokenWord.getSecond(), 0, rightMargin);
-
-        return new Pair<TextFragment>(head, tail);
-    }
-
     /**
      * Returns the width of the character <code>M</code> in the given font.
      *
@@ -400,7 +269,7 @@ public class TextSequenceUtil {
      */
     public static float getEmWidth(final FontDescriptor fontDescriptor)
             throws IOException {
-        return getStringWidth("M", fontDescriptor);
+        return fontDescriptor.getEmWidth();
     }
 
     /**
@@ -413,8 +282,23 @@ public class TextSequenceUtil {
      */
     public static float getStringWidth(final String text,
                                        final FontDescriptor fontDescriptor) throws IOException {
-        return fontDescriptor.getSize()
-                * fontDescriptor.getFont().getStringWidth(text) / 1000;
+        return getStringWidth(text, 0, text.length(), fontDescriptor);
+    }
+
+    /**
+     * Returns the width of the given range of the text in the given font.
+     *
+     * @param text           the text to measure.
+     * @param start          the index of the first character to measure.
+     * @param end            the index after the last character to measure.
+     * @param fontDescriptor font and size.
+     * @return the width of given text range.
+     * @throws IOException by pdfbox
+     */
+    public static float getStringWidth(final CharSequence text,
+                                       final int start, final int end,
+                                       final FontDescriptor fontDescriptor) throws IOException {
+        return fontDescriptor.getStringWidth(text, start, end);
     }
 
     /**
@@ -438,23 +322,9 @@ public class TextSequenceUtil {
                                 PDPageContentStream contentStream, Position upperLeft,
                                 DrawListener drawListener, Alignment alignment, float maxWidth,
                                 final float lineSpacing, final boolean applyLineSpacingToFirstLine) throws IOException {
-        List<TextLine> lines = wordWrapToLines(text, maxWidth);
-        float maxLineWidth = Math.max(maxWidth, getMaxWidth(lines));
-        Position position = upperLeft;
-        float lastLineHeight = 0;
-        for (int i = 0; i < lines.size(); i++) {
-            boolean applyLineSpacing = i > 0 || applyLineSpacingToFirstLine;
-            TextLine textLine = lines.get(i);
-            float currentLineHeight = textLine.getHeight();
-            float lead = lastLineHeight;
-            if (applyLineSpacing) {
-                lead += (currentLineHeight * (lineSpacing - 1));
-            }
-            lastLineHeight = currentLineHeight;
-            position = position.add(0, -lead);
-            textLine.drawAligned(contentStream, position, alignment, maxLineWidth, drawListener);
-        }
-
+        new TextLayout(text, maxWidth, lineSpacing,
+                applyLineSpacingToFirstLine).drawText(contentStream, upperLeft,
+                alignment, drawListener);
     }
 
     /**
@@ -506,10 +376,12 @@ public class TextSequenceUtil {
      */
     public static float getWidth(final TextSequence textSequence,
                                  final float maxWidth) throws IOException {
-        List<TextLine> lines = wordWrapToLines(textSequence, maxWidth);
+        LineBreaker lines = new LineBreaker(textSequence, maxWidth);
         float max = 0;
-        for (TextLine line : lines) {
+        TextLine line = lines.nextLine();
+        while (line != null) {
             max = Math.max(max, line.getWidth());
+            line = lines.nextLine();
         }
         return max;
     }
@@ -528,53 +400,37 @@ public class TextSequenceUtil {
     public static float getHeight(final TextSequence textSequence,
                                   final float maxWidth, final float lineSpacing,
                                   final boolean applyLineSpacingToFirstLine) throws IOException {
-        List<TextLine> lines = wordWrapToLines(textSequence, maxWidth);
+        LineBreaker lines = new LineBreaker(textSequence, maxWidth);
         float sum = 0;
-        for (int i = 0; i < lines.size(); i++) {
-            boolean applyLineSpacing = i > 0 || applyLineSpacingToFirstLine;
-            TextLine line = lines.get(i);
-            float lineHeight = line.getHeight();
-            if (applyLineSpacing) {
-                lineHeight *= lineSpacing;
-            }
-            sum += lineHeight;
+        int index = 0;
+        TextLine line = lines.nextLine();
+        while (line != null) {
+            sum += getLineHeight(line, index++, lineSpacing,
+                    applyLineSpacingToFirstLine);
+            line = lines.nextLine();
         }
         return sum;
     }
 
-    private static class WordWrapContext {
-        private TextFragment word;
-        private float lineLength;
-        private float indentation;
-        boolean isWrappedLine;
-
-        public WordWrapContext(TextFragment word, float lineLength,
-                               float indentation, boolean isWrappedLine) {
-            this.word = word;
-            this.lineLength = lineLength;
-            this.indentation = indentation;
-            this.isWrappedLine = isWrappedLine;
-        }
-
-        public TextFragment getWord() {
-            return word;
-        }
-
-        public float getLineLength() {
-            return lineLength;
-        }
-
-        public float getIndentation() {
-            return indentation;
-        }
-
-        public boolean isWrappedLine() {
-            return isWrappedLine;
-        }
-
-        public boolean isMoreToWrap() {
-            return getWord() != null;
+    /**
+     * Calculates the height of a line including the line spacing.
+     *
+     * @param line                        the line.
+     * @param index                       the index of the line.
+     * @param lineSpacing                 the line spacing factor.
+     * @param applyLineSpacingToFirstLine indicates if the line spacing should be applied to the first
+     *                                    line also.
+     * @return the height of the line.
+     * @throws IOException by pdfbox
+     */
+    static float getLineHeight(final TextLine line, final int index,
+                               final float lineSpacing, final boolean applyLineSpacingToFirstLine)
+            throws IOException {
+        float lineHeight = line.getHeight();
+        if (index > 0 || applyLineSpacingToFirstLine) {
+            lineHeight *= lineSpacing;
         }
-
+        return lineHeight;
     }
+
 }
@@ -56,7 +56,7 @@ public class AnnotatedStyledText extends StyledText implements Annotated {
     public AnnotatedStyledText(String text, float size, PDFont font,
                                @ColorInt int color, final float baselineOffset,
                                Collection<? extends Annotation> annotations) {
-        this(text, new FontDescriptor(font, size), color, baselineOffset, 0, 0,
+        this(text, FontDescriptor.getInstance(font, size), color, baselineOffset, 0, 0,
                 annotations);
     }
 
@@ -14,7 +14,7 @@ import rst.pdfbox.layout.text.DrawContext;
 import rst.pdfbox.layout.text.Position;
 import rst.pdfbox.layout.text.StyledText;
 import rst.pdfbox.layout.text.annotations.Annotations.UnderlineAnnotation;
-import rst.pdfbox.layout.util.ColorConverter;
+import rst.pdfbox.layout.util.TrackingContentStream;
 
 /**
  * This annotation processor handles the {@link UnderlineAnnotation}s, and adds
@@ -37,9 +37,7 @@ public class UnderlineAnnotationProcessor implements AnnotationProcessor {
         for (UnderlineAnnotation underlineAnnotation : drawnObject
                 .getAnnotationsOfType(UnderlineAnnotation.class)) {
             float fontSize = drawnText.getFontDescriptor().getSize();
-            float ascent = fontSize
-                    * drawnText.getFontDescriptor().getFont()
-                    .getFontDescriptor().getAscent() / 1000;
+            float ascent = drawnText.getFontDescriptor().getAscent();
 
             float baselineOffset = fontSize * underlineAnnotation.getBaselineOffsetScale();
             float thickness = (0.01f + fontSize * 0.05f)
@@ -61,8 +59,10 @@ public class UnderlineAnnotationProcessor implements AnnotationProcessor {
 
     @Override
     public void afterPage(DrawContext drawContext) throws IOException {
+        TrackingContentStream stream = new TrackingContentStream(
+                drawContext.getCurrentPageContentStream());
         for (Line line : linesOnPage) {
-            line.draw(drawContext.getCurrentPageContentStream());
+            line.draw(stream);
         }
         linesOnPage.clear();
     }
@@ -87,12 +87,13 @@ public class UnderlineAnnotationProcessor implements AnnotationProcessor {
             this.color = color;
         }
 
-        public void draw(PDPageContentStream contentStream) throws IOException {
+        public void draw(TrackingContentStream stream) throws IOException {
+            PDPageContentStream contentStream = stream.getContentStream();
             if (color != null) {
-                contentStream.setStrokingColor(ColorConverter.convert(color));
+                stream.setStrokingColor(color);
             }
             if (stroke != null) {
-                stroke.applyTo(contentStream);
+                stroke.applyTo(stream);
             }
             contentStream.moveTo(start.getX(), start.getY());
             contentStream.lineTo(end.getX(), end.getY());
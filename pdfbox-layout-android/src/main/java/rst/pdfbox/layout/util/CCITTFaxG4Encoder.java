@@ -0,0 +1,207 @@
+package rst.pdfbox.layout.util;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Encodes bilevel images line by line using CCITT group 4 (T.6) two
+ * dimensional coding, as decoded by the <code>CCITTFaxDecode</code> filter
+ * with <code>K = -1</code>. Each line is coded relative to the line above, so
+ * typical scans of text or line art shrink to a fraction of their raw size.
+ */
+public class CCITTFaxG4Encoder {
+
+    private final static String[] WHITE_TERMINATING = {"00110101",
+            "000111", "0111", "1000", "1011", "1100", "1110", "1111", "10011",
+            "10100", "00111", "01000", "001000", "000011", "110100", "110101",
+            "101010", "101011", "0100111", "0001100", "0001000", "0010111",
+            "0000011", "0000100", "0101000", "0101011", "0010011", "0100100",
+            "0011000", "00000010", "00000011", "00011010", "00011011",
+            "00010010", "00010011", "00010100", "00010101", "00010110",
+            "00010111", "00101000", "00101001", "00101010", "00101011",
+            "00101100", "00101101", "00000100", "00000101", "00001010",
+            "00001011", "01010010", "01010011", "01010100", "01010101",
+            "00100100", "00100101", "01011000", "01011001", "01011010",
+            "01011011", "01001010", "01001011", "00110010", "00110011",
+            "00110100"};
+
+    private final static String[] WHITE_MAKEUP = {"11011", "10010",
+            "010111", "0110111", "00110110", "00110111", "01100100",
+            "01100101", "01101000", "01100111", "011001100", "011001101",
+            "011010010", "011010011", "011010100", "011010101", "011010110",
+            "011010111", "011011000", "011011001", "011011010", "011011011",
+            "010011000", "010011001", "010011010", "011000", "010011011"};
+
+    private final static String[] BLACK_TERMINATING = {"0000110111",
+            "010", "11", "10", "011", "0011", "0010", "00011", "000101",
+            "000100", "0000100", "0000101", "0000111", "00000100", "00000111",
+            "000011000", "0000010111", "0000011000", "0000001000",
+            "00001100111", "00001101000", "00001101100", "00000110111",
+            "00000101000", "00000010111", "00000011000", "000011001010",
+            "000011001011", "000011001100", "000011001101", "000001101000",
+            "000001101001", "000001101010", "000001101011", "000011010010",
+            "000011010011", "000011010100", "000011010101", "000011010110",
+            "000011010111", "000001101100", "000001101101", "000011011010",
+            "000011011011", "000001010100", "000001010101", "000001010110",
+            "000001010111", "000001100100", "000001100101", "000001010010",
+            "000001010011", "000000100100", "000000110111", "000000111000",
+            "000000100111", "000000101000", "000001011000", "000001011001",
+            "000000101011", "000000101100", "000001011010", "000001100110",
+            "000001100111"};
+
+    private final static String[] BLACK_MAKEUP = {"0000001111",
+            "000011001000", "000011001001", "000001011011", "000000110011",
+            "000000110100", "000000110101", "0000001101100", "0000001101101",
+            "0000001001010", "0000001001011", "0000001001100",
+            "0000001001101", "0000001110010", "0000001110011",
+            "0000001110100", "0000001110101", "0000001110110",
+            "0000001110111", "0000001010010", "0000001010011",
+            "0000001010100", "0000001010101", "0000001011010",
+            "0000001011011", "0000001100100", "0000001100101"};
+
+    /**
+     * The makeup codes for runs from 1792 to 2560, used for both colors.
+     */
+    private final static String[] EXTENDED_MAKEUP = {"00000001000",
+            "00000001100", "00000001101", "000000010010", "000000010011",
+            "000000010100", "000000010101", "000000010110", "000000010111",
+            "000000011100", "000000011101", "000000011110", "000000011111"};
+
+    private final static String PASS = "0001";
+    private final static String HORIZONTAL = "001";
+    /**
+     * The vertical mode codes for <code>a1 - b1</code> from -3 to 3.
+     */
+    private final static String[] VERTICAL = {"0000010", "000010", "010",
+            "1", "011", "000011", "0000011"};
+    private final static String END_OF_LINE = "000000000001";
+
+    private final static int MAX_MAKEUP = 2560;
+
+    private final int width;
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private boolean[] reference;
+    private int bits;
+    private int bitCount;
+
+    /**
+     * Creates an encoder.
+     *
+     * @param width the number of pixels per line.
+     */
+    public CCITTFaxG4Encoder(final int width) {
+        this.width = width;
+        // the line above the first one is white
+        this.reference = new boolean[width];
+    }
+
+    /**
+     * @return the number of pixels per line.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Encodes the next line.
+     *
+     * @param black the pixels of the line, where <code>true</code> indicates a
+     *              black pixel. The array is kept as reference for the next
+     *              line, so it must not be modified afterwards.
+     */
+    public void encodeLine(final boolean[] black) {
+        int a0 = -1;
+        boolean color = false;
+        while (a0 < width) {
+            int a1 = find(black, a0 + 1, !color);
+            int b1 = findReferenceChange(a0, color);
+            int b2 = find(reference, b1, color);
+            if (b2 < a1) {
+                write(PASS);
+                a0 = b2;
+            } else if (Math.abs(a1 - b1) <= 3) {
+                write(VERTICAL[a1 - b1 + 3]);
+                a0 = a1;
+                color = !color;
+            } else {
+                int a2 = find(black, a1, color);
+                write(HORIZONTAL);
+                writeRun(a1 - Math.max(a0, 0), color);
+                writeRun(a2 - a1, !color);
+                a0 = a2;
+            }
+        }
+        reference = black;
+    }
+
+    /**
+     * Writes the end of the data and returns the encoded image.
+     *
+     * @return the encoded image.
+     */
+    public byte[] finish() {
+        write(END_OF_LINE);
+        write(END_OF_LINE);
+        if (bitCount > 0) {
+            output.write(bits << (8 - bitCount));
+            bits = 0;
+            bitCount = 0;
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Finds the first changing element on the reference line right of
+     * <code>a0</code> having the opposite color of <code>a0</code>.
+     */
+    private int findReferenceChange(final int a0, final boolean color) {
+        int start = a0 + 1;
+        if (start > 0 && start < width && reference[start - 1] != color) {
+            // inside a run of the opposite color, which does not change here
+            start = find(reference, start, color);
+        }
+        return find(reference, start, !color);
+    }
+
+    /**
+     * @return the index of the first pixel of the given color at or after
+     * <code>from</code>, or the width if there is none.
+     */
+    private int find(final boolean[] line, final int from, final boolean color) {
+        for (int index = Math.max(from, 0); index < width; ++index) {
+            if (line[index] == color) {
+                return index;
+            }
+        }
+        return width;
+    }
+
+    private void writeRun(int length, final boolean black) {
+        while (length > MAX_MAKEUP) {
+            write(EXTENDED_MAKEUP[EXTENDED_MAKEUP.length - 1]);
+            length -= MAX_MAKEUP;
+        }
+        if (length >= 64) {
+            int makeup = length / 64;
+            if (makeup > 27) {
+                write(EXTENDED_MAKEUP[makeup - 28]);
+            } else {
+                write(black ? BLACK_MAKEUP[makeup - 1]
+                        : WHITE_MAKEUP[makeup - 1]);
+            }
+            length %= 64;
+        }
+        write(black ? BLACK_TERMINATING[length] : WHITE_TERMINATING[length]);
+    }
+
+    private void write(final String code) {
+        for (int index = 0; index < code.length(); ++index) {
+            bits = (bits << 1) | (code.charAt(index) - '0');
+            if (++bitCount == 8) {
+                output.write(bits);
+                bits = 0;
+                bitCount = 0;
+            }
+        }
+    }
+
+}
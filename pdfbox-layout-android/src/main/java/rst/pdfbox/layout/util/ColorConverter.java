@@ -6,11 +6,45 @@ import android.support.annotation.ColorInt;
 import com.tom_roush.pdfbox.pdmodel.graphics.color.PDColor;
 import com.tom_roush.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 public class ColorConverter {
 
+    private final static int CACHE_SIZE = 256;
+
+    /**
+     * The converted colors, which are immutable and therefore shared. Documents
+     * usually use just a handful of colors, so this is bounded just for safety.
+     */
+    private final static Map<Integer, PDColor> CACHE = new LinkedHashMap<Integer, PDColor>(
+            16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, PDColor> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Converts the given color to an RGB {@link PDColor}. The same instance is
+     * returned for the same color.
+     *
+     * @param color the color to convert.
+     * @return the converted color.
+     */
     public static PDColor convert(@ColorInt int color) {
-        float[] components = new float[]{Math.abs(Color.red(color)) / 255f, Math.abs(Color.green(color)) / 255f, Math.abs(Color.blue(color)) / 255f};
-        return new PDColor(components, PDDeviceRGB.INSTANCE);
+        synchronized (CACHE) {
+            PDColor converted = CACHE.get(color);
+            if (converted == null) {
+                float[] components = new float[]{Math.abs(Color.red(color)) / 255f, Math.abs(Color.green(color)) / 255f, Math.abs(Color.blue(color)) / 255f};
+                converted = new PDColor(components, PDDeviceRGB.INSTANCE);
+                CACHE.put(color, converted);
+            }
+            return converted;
+        }
     }
 
 }
@@ -0,0 +1,25 @@
+package rst.pdfbox.layout.util;
+
+/**
+ * An {@link IndexedWordBreaker} that may break words by hyphenation. If a word
+ * is broken at a hyphenation point, a hyphen is appended to the head of the
+ * word when it is drawn. The width of that hyphen has to be taken into
+ * account when finding the break index.
+ */
+public interface HyphenatingWordBreaker extends IndexedWordBreaker {
+
+    /**
+     * Indicates if breaking the word at the given index requires a hyphen to
+     * be appended to its head.
+     *
+     * @param text       the text containing the word.
+     * @param start      the index of the first character of the word.
+     * @param end        the index after the last character of the word.
+     * @param breakIndex the index the word is broken at, as returned by
+     *                   {@link #findBreakIndex(CharSequence, int, int, rst.pdfbox.layout.text.FontDescriptor, float, boolean)}.
+     * @return <code>true</code> if a hyphen has to be appended.
+     */
+    boolean isHyphenated(final CharSequence text, final int start,
+                         final int end, final int breakIndex);
+
+}
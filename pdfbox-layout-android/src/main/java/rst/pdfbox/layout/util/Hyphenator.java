@@ -0,0 +1,480 @@
+package rst.pdfbox.layout.util;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * Finds the hyphenation points of words using Liang's algorithm with TeX-style
+ * hyphenation patterns, e.g. <code>.ach4</code> or <code>a1b</code>. The
+ * patterns are compiled into a compact trie made of primitive arrays, where
+ * the children of a node are stored consecutively and sorted by character.
+ * The hyphenation points of recently used words are kept in a bounded (LRU)
+ * cache, so repeated words cost a single lookup.
+ * <p>
+ * Pattern files may either contain the plain patterns (separated by
+ * whitespace), or TeX <code>\patterns{...}</code> and
+ * <code>\hyphenation{...}</code> groups. Comments start with <code>%</code>.
+ * Instances are thread-safe.
+ */
+public final class Hyphenator {
+
+    /**
+     * The classpath location of the patterns loaded by
+     * {@link #getInstance(String)}, where <code>%s</code> is replaced by the
+     * language, e.g. <code>hyph-en-us.pat.txt</code>.
+     */
+    public final static String PATTERN_RESOURCE = "/rst/pdfbox/layout/hyphenation/hyph-%s.pat.txt";
+
+    /**
+     * Default number of cached words.
+     */
+    public final static int DEFAULT_CACHE_SIZE = 4096;
+
+    private final static int[] NO_POINTS = new int[0];
+    private final static Map<String, Hyphenator> INSTANCES = new HashMap<String, Hyphenator>();
+
+    /**
+     * The edge label of each node, where node 0 is the root.
+     */
+    private final char[] labels;
+    /**
+     * The index of the first child of each node, children are stored
+     * consecutively and sorted by label.
+     */
+    private final int[] firstChild;
+    /**
+     * The number of children of each node.
+     */
+    private final int[] childCount;
+    /**
+     * The offset of the values of the pattern ending at each node in
+     * {@link #values}, or <code>-1</code> if no pattern ends there. A pattern
+     * of length <code>n</code> has <code>n + 1</code> values.
+     */
+    private final int[] valueOffsets;
+    private final byte[] values;
+
+    private final Map<String, int[]> exceptions;
+    private final int leftMin;
+    private final int rightMin;
+    private final Map<String, int[]> cache;
+
+    /**
+     * Creates a hyphenator using the TeX defaults for the minimal number of
+     * characters in front of (2) and after (3) a hyphen.
+     *
+     * @param patterns the reader to read the patterns from.
+     * @throws IOException if reading fails.
+     */
+    public Hyphenator(final Reader patterns) throws IOException {
+        this(patterns, 2, 3, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Creates a hyphenator.
+     *
+     * @param patterns  the reader to read the patterns from.
+     * @param leftMin   the minimal number of characters in front of a hyphen.
+     * @param rightMin  the minimal number of characters after a hyphen.
+     * @param cacheSize the maximum number of words to cache.
+     * @throws IOException if reading fails.
+     */
+    public Hyphenator(final Reader patterns, final int leftMin,
+                      final int rightMin, final int cacheSize) throws IOException {
+        this.leftMin = Math.max(1, leftMin);
+        this.rightMin = Math.max(1, rightMin);
+        this.cache = new LruCache(cacheSize);
+        this.exceptions = new HashMap<String, int[]>();
+
+        Node root = new Node();
+        int nodeCount = parse(patterns, root);
+
+        // flatten the trie breadth first, so siblings are stored consecutively
+        labels = new char[nodeCount];
+        firstChild = new int[nodeCount];
+        childCount = new int[nodeCount];
+        valueOffsets = new int[nodeCount];
+        List<Node> queue = new ArrayList<Node>(nodeCount);
+        List<byte[]> nodeValues = new ArrayList<byte[]>();
+        int valueLength = 0;
+        queue.add(root);
+        for (int index = 0; index < queue.size(); ++index) {
+            Node node = queue.get(index);
+            firstChild[index] = queue.size();
+            childCount[index] = node.children.size();
+            for (Entry<Character, Node> child : node.children.entrySet()) {
+                labels[queue.size()] = child.getKey();
+                queue.add(child.getValue());
+            }
+            valueOffsets[index] = -1;
+            if (node.values != null) {
+                valueOffsets[index] = valueLength;
+                valueLength += node.values.length;
+                nodeValues.add(node.values);
+            }
+        }
+        values = new byte[valueLength];
+        int offset = 0;
+        for (byte[] patternValues : nodeValues) {
+            System.arraycopy(patternValues, 0, values, offset,
+                    patternValues.length);
+            offset += patternValues.length;
+        }
+    }
+
+    /**
+     * Returns the (shared) hyphenator for the given language. The patterns
+     * are loaded once per language from the classpath, see
+     * {@link #PATTERN_RESOURCE}.
+     *
+     * @param language the language, e.g. <code>en-us</code> or <code>de</code>.
+     * @return the hyphenator.
+     * @throws IOException if the patterns are not found or cannot be read.
+     */
+    public static Hyphenator getInstance(final String language)
+            throws IOException {
+        String key = language.toLowerCase().replace('_', '-');
+        synchronized (INSTANCES) {
+            Hyphenator hyphenator = INSTANCES.get(key);
+            if (hyphenator == null) {
+                String resource = String.format(PATTERN_RESOURCE, key);
+                InputStream in = Hyphenator.class.getResourceAsStream(resource);
+                if (in == null) {
+                    throw new FileNotFoundException(String.format(
+                            "no hyphenation patterns found for '%s' at %s",
+                            language, resource));
+                }
+                try {
+                    hyphenator = new Hyphenator(new BufferedReader(
+                            new InputStreamReader(in, "UTF-8")));
+                } finally {
+                    in.close();
+                }
+                INSTANCES.put(key, hyphenator);
+            }
+            return hyphenator;
+        }
+    }
+
+    /**
+     * Registers the hyphenator to use for the given language, e.g. with
+     * patterns loaded from a different location.
+     *
+     * @param language   the language.
+     * @param hyphenator the hyphenator to use for the language.
+     */
+    public static void register(final String language,
+                                final Hyphenator hyphenator) {
+        synchronized (INSTANCES) {
+            INSTANCES.put(language.toLowerCase().replace('_', '-'), hyphenator);
+        }
+    }
+
+    /**
+     * Finds the hyphenation points of all words in the given range of the
+     * text. A word is a sequence of letters, so any leading blank or
+     * punctuation of the range is skipped.
+     *
+     * @param text  the text containing the words.
+     * @param start the index of the first character of the range.
+     * @param end   the index after the last character of the range.
+     * @return the (ascending) indices in the text that allow a hyphen to be
+     * inserted in front of.
+     */
+    public int[] getHyphenationPoints(final CharSequence text,
+                                      final int start, final int end) {
+        int[] points = NO_POINTS;
+        int count = 0;
+        int index = start;
+        while (index < end) {
+            while (index < end && !Character.isLetter(text.charAt(index))) {
+                ++index;
+            }
+            int wordStart = index;
+            while (index < end && Character.isLetter(text.charAt(index))) {
+                ++index;
+            }
+            if (index - wordStart < leftMin + rightMin) {
+                continue;
+            }
+            int[] wordPoints = hyphenate(text.subSequence(wordStart, index)
+                    .toString().toLowerCase());
+            if (wordPoints.length == 0) {
+                continue;
+            }
+            if (count + wordPoints.length > points.length) {
+                int[] newPoints = new int[Math.max(count + wordPoints.length,
+                        points.length * 2)];
+                System.arraycopy(points, 0, newPoints, 0, count);
+                points = newPoints;
+            }
+            for (int point : wordPoints) {
+                points[count++] = wordStart + point;
+            }
+        }
+        if (count < points.length) {
+            int[] result = new int[count];
+            System.arraycopy(points, 0, result, 0, count);
+            return result;
+        }
+        return points;
+    }
+
+    /**
+     * Indicates if a hyphen may be inserted at the given index of the text.
+     *
+     * @param text  the text containing the word.
+     * @param start the index of the first character of the range containing
+     *              the word.
+     * @param end   the index after the last character of the range containing
+     *              the word.
+     * @param index the index to test.
+     * @return <code>true</code> if the index is a hyphenation point.
+     */
+    public boolean isHyphenationPoint(final CharSequence text,
+                                      final int start, final int end, final int index) {
+        if (index <= start || index >= end
+                || !Character.isLetter(text.charAt(index - 1))
+                || !Character.isLetter(text.charAt(index))) {
+            return false;
+        }
+        int wordStart = index - 1;
+        while (wordStart > start && Character.isLetter(text.charAt(wordStart - 1))) {
+            --wordStart;
+        }
+        int wordEnd = index + 1;
+        while (wordEnd < end && Character.isLetter(text.charAt(wordEnd))) {
+            ++wordEnd;
+        }
+        if (wordEnd - wordStart < leftMin + rightMin) {
+            return false;
+        }
+        int[] points = hyphenate(text.subSequence(wordStart, wordEnd)
+                .toString().toLowerCase());
+        for (int point : points) {
+            if (wordStart + point == index) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Hyphenates a single (lower case) word.
+     *
+     * @param word the word to hyphenate.
+     * @return the (ascending) indices in the word that allow a hyphen to be
+     * inserted in front of.
+     */
+    private int[] hyphenate(final String word) {
+        int[] points;
+        synchronized (cache) {
+            points = cache.get(word);
+        }
+        if (points != null) {
+            return points;
+        }
+
+        points = exceptions.get(word);
+        if (points == null) {
+            points = findPoints(word);
+        }
+        synchronized (cache) {
+            cache.put(word, points);
+        }
+        return points;
+    }
+
+    private int[] findPoints(final String word) {
+        // the word enclosed in dots, which match the word boundaries
+        int length = word.length() + 2;
+        char[] chars = new char[length];
+        chars[0] = '.';
+        word.getChars(0, word.length(), chars, 1);
+        chars[length - 1] = '.';
+
+        // levels[i] is the value of the gap in front of chars[i]
+        byte[] levels = new byte[length + 1];
+        for (int start = 0; start < length; ++start) {
+            int node = 0;
+            for (int index = start; index < length; ++index) {
+                node = findChild(node, chars[index]);
+                if (node < 0) {
+                    break;
+                }
+                int offset = valueOffsets[node];
+                if (offset >= 0) {
+                    int patternLength = index - start + 1;
+                    for (int i = 0; i <= patternLength; ++i) {
+                        if (values[offset + i] > levels[start + i]) {
+                            levels[start + i] = values[offset + i];
+                        }
+                    }
+                }
+            }
+        }
+
+        // a hyphen in front of word[k] corresponds to the gap in front of
+        // chars[k + 1], odd values allow hyphenation
+        int count = 0;
+        int[] points = new int[word.length()];
+        for (int k = leftMin; k <= word.length() - rightMin; ++k) {
+            if ((levels[k + 1] & 1) != 0) {
+                points[count++] = k;
+            }
+        }
+        if (count == 0) {
+            return NO_POINTS;
+        }
+        int[] result = new int[count];
+        System.arraycopy(points, 0, result, 0, count);
+        return result;
+    }
+
+    private int findChild(final int node, final char c) {
+        int low = firstChild[node];
+        int high = low + childCount[node] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char label = labels[mid];
+            if (label < c) {
+                low = mid + 1;
+            } else if (label > c) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses the patterns and exceptions into the (temporary) tree.
+     *
+     * @return the number of nodes in the tree.
+     */
+    private int parse(final Reader reader, final Node root) throws IOException {
+        BufferedReader in = reader instanceof BufferedReader ? (BufferedReader) reader
+                : new BufferedReader(reader);
+        int nodeCount = 1;
+        boolean inExceptions = false;
+        String line;
+        while ((line = in.readLine()) != null) {
+            int comment = line.indexOf('%');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            for (String token : line.trim().split("\\s+")) {
+                if (token.startsWith("\\patterns")) {
+                    inExceptions = false;
+                    token = token.substring("\\patterns".length());
+                } else if (token.startsWith("\\hyphenation")) {
+                    inExceptions = true;
+                    token = token.substring("\\hyphenation".length());
+                }
+                token = token.replace("{", "").replace("}", "");
+                if (token.length() == 0) {
+                    continue;
+                }
+                if (inExceptions) {
+                    addException(token);
+                } else {
+                    nodeCount += addPattern(root, token);
+                }
+            }
+        }
+        return nodeCount;
+    }
+
+    /**
+     * Adds a pattern like <code>.ach4</code>.
+     *
+     * @return the number of nodes created.
+     */
+    private static int addPattern(final Node root, final String pattern) {
+        StringBuilder letters = new StringBuilder(pattern.length());
+        byte[] levels = new byte[pattern.length() + 1];
+        for (int index = 0; index < pattern.length(); ++index) {
+            char c = pattern.charAt(index);
+            if (c >= '0' && c <= '9') {
+                levels[letters.length()] = (byte) (c - '0');
+            } else {
+                letters.append(Character.toLowerCase(c));
+            }
+        }
+        int created = 0;
+        Node node = root;
+        for (int index = 0; index < letters.length(); ++index) {
+            Character c = letters.charAt(index);
+            Node child = node.children.get(c);
+            if (child == null) {
+                child = new Node();
+                node.children.put(c, child);
+                ++created;
+            }
+            node = child;
+        }
+        node.values = new byte[letters.length() + 1];
+        System.arraycopy(levels, 0, node.values, 0, node.values.length);
+        return created;
+    }
+
+    /**
+     * Adds an exception like <code>as-so-ciate</code>.
+     */
+    private void addException(final String exception) {
+        StringBuilder word = new StringBuilder(exception.length());
+        int[] points = new int[exception.length()];
+        int count = 0;
+        for (int index = 0; index < exception.length(); ++index) {
+            char c = exception.charAt(index);
+            if (c == '-') {
+                points[count++] = word.length();
+            } else {
+                word.append(Character.toLowerCase(c));
+            }
+        }
+        int[] result = new int[count];
+        System.arraycopy(points, 0, result, 0, count);
+        exceptions.put(word.toString(), result);
+    }
+
+    /**
+     * A node of the tree used while parsing.
+     */
+    private static class Node {
+        private final Map<Character, Node> children = new TreeMap<Character, Node>();
+        private byte[] values;
+    }
+
+    /**
+     * A map removing the least recently used entry if full.
+     */
+    private static class LruCache extends LinkedHashMap<String, int[]> {
+
+        private static final long serialVersionUID = 1L;
+        private final int capacity;
+
+        LruCache(final int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Entry<String, int[]> eldest) {
+            return size() > capacity;
+        }
+    }
+
+}
@@ -0,0 +1,38 @@
+package rst.pdfbox.layout.util;
+
+import java.io.IOException;
+
+import rst.pdfbox.layout.text.FontDescriptor;
+
+/**
+ * Strategy on how to break a word, if it does not fit into a line. In contrast
+ * to {@link WordBreaker} the word is given as a range of a (larger) text, and
+ * the result is the index to break at, so breaking a word does not allocate
+ * any substrings. Legacy {@link WordBreaker}s may be used via the
+ * {@link WordBreakerAdapter}.
+ */
+public interface IndexedWordBreaker {
+
+    /**
+     * Finds the index to break the word in order to fit the given maximum
+     * width.
+     *
+     * @param text                 the text containing the word.
+     * @param start                the index of the first character of the word.
+     * @param end                  the index after the last character of the word.
+     * @param fontDescriptor       describing the font's type and size.
+     * @param maxWidth             the maximum width to obey.
+     * @param breakHardIfNecessary indicates if the word should be broken hard to fit the width,
+     *                             in case there is no suitable position for breaking it
+     *                             adequately.
+     * @return the index to break at, which is greater than <code>start</code>
+     * and less than <code>end</code>, or <code>-1</code> if the word cannot be
+     * broken.
+     * @throws IOException by pdfbox
+     */
+    int findBreakIndex(final CharSequence text, final int start,
+                       final int end, final FontDescriptor fontDescriptor,
+                       final float maxWidth, final boolean breakHardIfNecessary)
+            throws IOException;
+
+}
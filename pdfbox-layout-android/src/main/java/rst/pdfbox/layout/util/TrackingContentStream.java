@@ -0,0 +1,295 @@
+package rst.pdfbox.layout.util;
+
+import android.support.annotation.ColorInt;
+
+import com.tom_roush.pdfbox.pdmodel.PDPageContentStream;
+import com.tom_roush.pdfbox.pdmodel.font.PDFont;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Stack;
+
+/**
+ * Wraps a {@link PDPageContentStream} and keeps track of the graphics state
+ * set through it: font and size, leading, word spacing, stroking and
+ * non-stroking color, line width, dash pattern, cap and join style. Setting a value that is already in effect
+ * does not write any operator, so the content stream is not cluttered with
+ * redundant state changes. Save and restore are tracked as well.
+ * <p>
+ * Within a text object, the origin of the current text line is tracked, so
+ * lines may be positioned relative to each other using {@link #newLineAt(float, float)}
+ * instead of setting an absolute text matrix for each line.
+ * <p>
+ * The state is unknown initially, so the first change of each value is always
+ * written. If content has been written to the {@link #getContentStream()
+ * wrapped stream} directly, call {@link #invalidate()} since the tracked state
+ * may be stale afterwards.
+ */
+public class TrackingContentStream {
+
+    private final PDPageContentStream contentStream;
+    private final Stack<GraphicsState> savedStates = new Stack<GraphicsState>();
+    private GraphicsState state = new GraphicsState();
+    private float textLineX;
+    private float textLineY;
+
+    /**
+     * Creates a wrapper for the given content stream.
+     *
+     * @param contentStream the content stream to write to.
+     */
+    public TrackingContentStream(final PDPageContentStream contentStream) {
+        this.contentStream = contentStream;
+    }
+
+    /**
+     * @return the wrapped content stream.
+     */
+    public PDPageContentStream getContentStream() {
+        return contentStream;
+    }
+
+    /**
+     * Forgets the tracked state, so any subsequent change will be written.
+     */
+    public void invalidate() {
+        state = new GraphicsState();
+    }
+
+    /**
+     * Saves the graphics state.
+     *
+     * @throws IOException by pdfbox.
+     */
+    public void saveGraphicsState() throws IOException {
+        contentStream.saveGraphicsState();
+        savedStates.push(state.copy());
+    }
+
+    /**
+     * Restores the last saved graphics state. If the save has not been tracked
+     * by this wrapper, the state is unknown afterwards.
+     *
+     * @throws IOException by pdfbox.
+     */
+    public void restoreGraphicsState() throws IOException {
+        contentStream.restoreGraphicsState();
+        if (savedStates.isEmpty()) {
+            invalidate();
+        } else {
+            state = savedStates.pop();
+        }
+    }
+
+    /**
+     * Begins a text object, where the origin of the text line is
+     * <code>(0, 0)</code>.
+     *
+     * @throws IOException by pdfbox.
+     */
+    public void beginText() throws IOException {
+        contentStream.beginText();
+        textLineX = 0;
+        textLineY = 0;
+    }
+
+    /**
+     * Ends the text object.
+     *
+     * @throws IOException by pdfbox.
+     */
+    public void endText() throws IOException {
+        contentStream.endText();
+    }
+
+    /**
+     * Starts a new text line at the given position. If the line starts below
+     * the current one at the same x position, the line is started by
+     * <code>T*</code> using the leading, which is only set if it changed.
+     * Otherwise the line is moved relatively by <code>Td</code>.
+     *
+     * @param x the x position of the new line.
+     * @param y the y position of the (baseline of the) new line.
+     * @throws IOException by pdfbox.
+     */
+    public void newLineAt(final float x, final float y) throws IOException {
+        float dx = x - textLineX;
+        float dy = y - textLineY;
+        if (dx == 0 && dy < 0) {
+            if (-dy != state.leading) {
+                contentStream.setLeading(-dy);
+                state.leading = -dy;
+            }
+            contentStream.newLine();
+        } else {
+            contentStream.newLineAtOffset(dx, dy);
+        }
+        textLineX = x;
+        textLineY = y;
+    }
+
+    /**
+     * Moves the origin of the text line to the given position using
+     * <code>Td</code>.
+     *
+     * @param x the new x position.
+     * @param y the new y position.
+     * @throws IOException by pdfbox.
+     */
+    public void moveTextTo(final float x, final float y) throws IOException {
+        contentStream.newLineAtOffset(x - textLineX, y - textLineY);
+        textLineX = x;
+        textLineY = y;
+    }
+
+    /**
+     * Sets the font and size if not already in effect.
+     *
+     * @param font     the font.
+     * @param fontSize the font size.
+     * @throws IOException by pdfbox.
+     */
+    public void setFont(final PDFont font, final float fontSize)
+            throws IOException {
+        if (font != state.font || fontSize != state.fontSize) {
+            contentStream.setFont(font, fontSize);
+            state.font = font;
+            state.fontSize = fontSize;
+        }
+    }
+
+    /**
+     * Sets the word spacing (<code>Tw</code>) if not already in effect. Like
+     * any other tracked value, the word spacing is unknown until set through
+     * this method or after {@link #invalidate()}, so it is written then even
+     * if it is <code>0</code>.
+     *
+     * @param wordSpacing the word spacing.
+     * @throws IOException by pdfbox.
+     */
+    public void setWordSpacing(final float wordSpacing) throws IOException {
+        if (wordSpacing != state.wordSpacing) {
+            contentStream.setWordSpacing(wordSpacing);
+            state.wordSpacing = wordSpacing;
+        }
+    }
+
+    /**
+     * Sets the stroking color if not already in effect.
+     *
+     * @param color the color.
+     * @throws IOException by pdfbox.
+     */
+    public void setStrokingColor(@ColorInt final int color) throws IOException {
+        if (state.strokingColor == null || state.strokingColor != color) {
+            contentStream.setStrokingColor(ColorConverter.convert(color));
+            state.strokingColor = color;
+        }
+    }
+
+    /**
+     * Sets the non-stroking color if not already in effect.
+     *
+     * @param color the color.
+     * @throws IOException by pdfbox.
+     */
+    public void setNonStrokingColor(@ColorInt final int color)
+            throws IOException {
+        if (state.nonStrokingColor == null || state.nonStrokingColor != color) {
+            contentStream.setNonStrokingColor(ColorConverter.convert(color));
+            state.nonStrokingColor = color;
+        }
+    }
+
+    /**
+     * Sets the line width if not already in effect.
+     *
+     * @param lineWidth the line width.
+     * @throws IOException by pdfbox.
+     */
+    public void setLineWidth(final float lineWidth) throws IOException {
+        if (lineWidth != state.lineWidth) {
+            contentStream.setLineWidth(lineWidth);
+            state.lineWidth = lineWidth;
+        }
+    }
+
+    /**
+     * Sets the line dash pattern if not already in effect.
+     *
+     * @param pattern the dash pattern.
+     * @param phase   the phase to start the pattern with.
+     * @throws IOException by pdfbox.
+     */
+    public void setLineDashPattern(final float[] pattern, final float phase)
+            throws IOException {
+        if (state.dashPattern == null || phase != state.dashPhase
+                || !Arrays.equals(pattern, state.dashPattern)) {
+            contentStream.setLineDashPattern(pattern, phase);
+            state.dashPattern = pattern.clone();
+            state.dashPhase = phase;
+        }
+    }
+
+    /**
+     * Sets the line cap style if not already in effect.
+     *
+     * @param capStyle the cap style.
+     * @throws IOException by pdfbox.
+     */
+    public void setLineCapStyle(final int capStyle) throws IOException {
+        if (capStyle != state.capStyle) {
+            contentStream.setLineCapStyle(capStyle);
+            state.capStyle = capStyle;
+        }
+    }
+
+    /**
+     * Sets the line join style if not already in effect.
+     *
+     * @param joinStyle the join style.
+     * @throws IOException by pdfbox.
+     */
+    public void setLineJoinStyle(final int joinStyle) throws IOException {
+        if (joinStyle != state.joinStyle) {
+            contentStream.setLineJoinStyle(joinStyle);
+            state.joinStyle = joinStyle;
+        }
+    }
+
+    /**
+     * The tracked part of the graphics (and text) state, where <code>null</code>,
+     * <code>NaN</code> and <code>-1</code> denote an unknown value.
+     */
+    private static class GraphicsState {
+
+        private PDFont font;
+        private float fontSize = Float.NaN;
+        private float leading = Float.NaN;
+        private float wordSpacing = Float.NaN;
+        private Integer strokingColor;
+        private Integer nonStrokingColor;
+        private float lineWidth = Float.NaN;
+        private float[] dashPattern;
+        private float dashPhase;
+        private int capStyle = -1;
+        private int joinStyle = -1;
+
+        private GraphicsState copy() {
+            GraphicsState copy = new GraphicsState();
+            copy.font = font;
+            copy.fontSize = fontSize;
+            copy.leading = leading;
+            copy.wordSpacing = wordSpacing;
+            copy.strokingColor = strokingColor;
+            copy.nonStrokingColor = nonStrokingColor;
+            copy.lineWidth = lineWidth;
+            copy.dashPattern = dashPattern;
+            copy.dashPhase = dashPhase;
+            copy.capStyle = capStyle;
+            copy.joinStyle = joinStyle;
+            return copy;
+        }
+    }
+
+}
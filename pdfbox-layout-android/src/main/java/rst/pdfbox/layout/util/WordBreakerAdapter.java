@@ -0,0 +1,55 @@
+package rst.pdfbox.layout.util;
+
+import java.io.IOException;
+
+import rst.pdfbox.layout.text.FontDescriptor;
+
+/**
+ * Adapts a (legacy) {@link WordBreaker} to the {@link IndexedWordBreaker}
+ * interface. The word is passed as a substring to the adapted breaker, and the
+ * length of the returned head is used as the break index.
+ */
+public class WordBreakerAdapter implements IndexedWordBreaker {
+
+    private final WordBreaker wordBreaker;
+
+    /**
+     * Creates the adapter.
+     *
+     * @param wordBreaker the breaker to adapt.
+     */
+    public WordBreakerAdapter(final WordBreaker wordBreaker) {
+        this.wordBreaker = wordBreaker;
+    }
+
+    /**
+     * @return the adapted breaker.
+     */
+    public WordBreaker getWordBreaker() {
+        return wordBreaker;
+    }
+
+    @Override
+    public int findBreakIndex(final CharSequence text, final int start,
+                              final int end, final FontDescriptor fontDescriptor,
+                              final float maxWidth, final boolean breakHardIfNecessary)
+            throws IOException {
+        Pair<String> brokenWord = wordBreaker.breakWord(
+                text.subSequence(start, end).toString(), fontDescriptor,
+                maxWidth, breakHardIfNecessary);
+        if (brokenWord == null) {
+            return -1;
+        }
+        int breakIndex = start + brokenWord.getFirst().length();
+        if (breakIndex <= start || breakIndex >= end) {
+            return -1;
+        }
+        return breakIndex;
+    }
+
+    @Override
+    public String toString() {
+        return "WordBreakerAdapter [wordBreaker=" + wordBreaker + "]";
+    }
+
+}
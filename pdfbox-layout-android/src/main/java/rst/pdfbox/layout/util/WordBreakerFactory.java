@@ -4,13 +4,15 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import rst.pdfbox.layout.util.WordBreakers.DefaultWordBreaker;
+import rst.pdfbox.layout.util.WordBreakers.HyphenationWordBreaker;
 import rst.pdfbox.layout.util.WordBreakers.NonBreakingWordBreaker;
 
 /**
  * Factory for creating a {@link WordBreaker}. This may be used to define a
  * custom strategy for breaking words. By default the {@link DefaultWordBreaker}
  * is used. Another predefined word breaker is the
- * {@link NonBreakingWordBreaker} which may be used to get the legacy behavior.
+ * {@link NonBreakingWordBreaker} which may be used to get the legacy behavior,
+ * and the {@link HyphenationWordBreaker} hyphenating words by TeX patterns.
  * To switch to a different word breaker, just set the system property
  * {@link #WORD_BREAKER_CLASS_PROPERTY pdfbox.layout.word.breaker} to the class
  * name of the breaker to use.
@@ -34,8 +36,9 @@ public class WordBreakerFactory {
     public final static String LEGACY_WORD_BREAKER_CLASS_NAME = NonBreakingWordBreaker.class
             .getName();
 
-    private final static WordBreaker DEFAULT_WORD_BREAKER = new DefaultWordBreaker();
+    private final static DefaultWordBreaker DEFAULT_WORD_BREAKER = new DefaultWordBreaker();
     private final static Map<String, WordBreaker> WORD_BREAKERS = new ConcurrentHashMap<String, WordBreaker>();
+    private final static Map<WordBreaker, IndexedWordBreaker> ADAPTERS = new ConcurrentHashMap<WordBreaker, IndexedWordBreaker>();
 
     /**
      * @return the word breaker instance to use.
@@ -44,6 +47,28 @@ public class WordBreakerFactory {
         return getWorkBreaker(System.getProperty(WORD_BREAKER_CLASS_PROPERTY));
     }
 
+    /**
+     * Returns the word breaker to use as an {@link IndexedWordBreaker}. Since
+     * this looks up the system property, callers should resolve the breaker
+     * once per layout run instead of once per word. A configured breaker that
+     * only implements {@link WordBreaker} is wrapped in a
+     * {@link WordBreakerAdapter}.
+     *
+     * @return the indexed word breaker instance to use.
+     */
+    public static IndexedWordBreaker getIndexedWordBreaker() {
+        WordBreaker wordBreaker = getWorkBreaker();
+        if (wordBreaker instanceof IndexedWordBreaker) {
+            return (IndexedWordBreaker) wordBreaker;
+        }
+        IndexedWordBreaker adapter = ADAPTERS.get(wordBreaker);
+        if (adapter == null) {
+            adapter = new WordBreakerAdapter(wordBreaker);
+            ADAPTERS.put(wordBreaker, adapter);
+        }
+        return adapter;
+    }
+
     private static WordBreaker getWorkBreaker(String className) {
         if (className == null) {
             return DEFAULT_WORD_BREAKER;
@@ -1,14 +1,10 @@
 package rst.pdfbox.layout.util;
 
 import java.io.IOException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Locale;
 
 import rst.pdfbox.layout.text.FontDescriptor;
 
-import static rst.pdfbox.layout.text.TextSequenceUtil.getEmWidth;
-import static rst.pdfbox.layout.text.TextSequenceUtil.getStringWidth;
-
 /**
  * Container class for the default word breakers.
  */
@@ -17,7 +13,8 @@ public class WordBreakers {
     /**
      * May by used for legacy compatibility, does not break at all.
      */
-    public static class NonBreakingWordBreaker implements WordBreaker {
+    public static class NonBreakingWordBreaker implements WordBreaker,
+            IndexedWordBreaker {
 
         @Override
         public Pair<String> breakWord(String word,
@@ -26,27 +23,53 @@ public class WordBreakers {
             return null;
         }
 
+        @Override
+        public int findBreakIndex(CharSequence text, int start, int end,
+                                  FontDescriptor fontDescriptor, float maxWidth,
+                                  boolean breakHardIfNecessary) throws IOException {
+            return -1;
+        }
+
     }
 
     /**
      * Abstract base class for implementing (custom) word breakers. Tries to
-     * break the word {@link #breakWordSoft(String, FontDescriptor, float)
+     * break the word
+     * {@link #findSoftBreakIndex(CharSequence, int, int, FontDescriptor, float)
      * softly}, or - if this is not possible -
-     * {@link #breakWordHard(String, FontDescriptor, float) hard}.
+     * {@link #findHardBreakIndex(CharSequence, int, int, FontDescriptor, float)
+     * hard}. Subclasses only implementing
+     * {@link #breakWordSoft(String, FontDescriptor, float)} are supported, but
+     * should override
+     * {@link #findSoftBreakIndex(CharSequence, int, int, FontDescriptor, float)}
+     * in order to break words without allocating substrings. Hard breaks
+     * always go through {@link #breakWordHard(String, FontDescriptor, float)},
+     * so subclasses may override either method in order to customize them.
      */
-    public static abstract class AbstractWordBreaker implements WordBreaker {
+    public static abstract class AbstractWordBreaker implements WordBreaker,
+            IndexedWordBreaker {
 
         @Override
         public Pair<String> breakWord(final String word,
                                       final FontDescriptor fontDescriptor, final float maxWidth,
                                       final boolean breakHardIfNecessary) throws IOException {
+            int breakIndex = findBreakIndex(word, 0, word.length(),
+                    fontDescriptor, maxWidth, breakHardIfNecessary);
+            return split(word, breakIndex);
+        }
 
-            Pair<String> brokenWord = breakWordSoft(word, fontDescriptor,
-                    maxWidth);
-            if (brokenWord == null && breakHardIfNecessary) {
-                brokenWord = breakWordHard(word, fontDescriptor, maxWidth);
+        @Override
+        public int findBreakIndex(final CharSequence text, final int start,
+                                  final int end, final FontDescriptor fontDescriptor,
+                                  final float maxWidth, final boolean breakHardIfNecessary)
+                throws IOException {
+            int breakIndex = findSoftBreakIndex(text, start, end,
+                    fontDescriptor, maxWidth);
+            if (breakIndex < 0 && breakHardIfNecessary) {
+                breakIndex = findHardBreakIndex(text, start, end,
+                        fontDescriptor, maxWidth);
             }
-            return brokenWord;
+            return breakIndex;
         }
 
         /**
@@ -63,6 +86,32 @@ public class WordBreakers {
                                                       final FontDescriptor fontDescriptor, final float maxWidth)
                 throws IOException;
 
+        /**
+         * Finds the index to break the word softly. The default implementation
+         * delegates to {@link #breakWordSoft(String, FontDescriptor, float)}.
+         *
+         * @param text           the text containing the word.
+         * @param start          the index of the first character of the word.
+         * @param end            the index after the last character of the word.
+         * @param fontDescriptor describing the font's type and size.
+         * @param maxWidth       the maximum width to obey.
+         * @return the index to break at, or <code>-1</code> if the word cannot
+         * be broken.
+         * @throws IOException by pdfbox
+         */
+        protected int findSoftBreakIndex(final CharSequence text,
+                                         final int start, final int end,
+                                         final FontDescriptor fontDescriptor, final float maxWidth)
+                throws IOException {
+            Pair<String> brokenWord = breakWordSoft(
+                    text.subSequence(start, end).toString(), fontDescriptor,
+                    maxWidth);
+            if (brokenWord == null) {
+                return -1;
+            }
+            return start + brokenWord.getFirst().length();
+        }
+
         /**
          * Breaks the word hard at the outermost position that fits the given
          * max width.
@@ -70,33 +119,69 @@ public class WordBreakers {
          * @param word           the word to break.
          * @param fontDescriptor describing the font's type and size.
          * @param maxWidth       the maximum width to obey.
-         * @return the broken word, or <code>null</code> if it cannot be broken.
+         * @return the broken word, or <code>null</code> if not even a single
+         * character fits.
          * @throws IOException by pdfbox
          */
         protected Pair<String> breakWordHard(final String word,
                                              final FontDescriptor fontDescriptor, final float maxWidth)
                 throws IOException {
-            int cutIndex = (int) (maxWidth / getEmWidth(fontDescriptor));
-            float currentWidth = getStringWidth(word.substring(0, cutIndex),
-                    fontDescriptor);
-            if (currentWidth > maxWidth) {
-                while (currentWidth > maxWidth) {
-                    --cutIndex;
-                    currentWidth = getStringWidth(word.substring(0, cutIndex),
-                            fontDescriptor);
-                }
-                ++cutIndex;
-            } else if (currentWidth < maxWidth) {
-                while (currentWidth < maxWidth) {
-                    ++cutIndex;
-                    currentWidth = getStringWidth(word.substring(0, cutIndex),
-                            fontDescriptor);
-                }
-                --cutIndex;
+            return split(word, findFittingIndex(word, 0, word.length(),
+                    fontDescriptor, maxWidth));
+        }
+
+        /**
+         * Finds the index to break the word hard. The default implementation
+         * delegates to {@link #breakWordHard(String, FontDescriptor, float)},
+         * which breaks at the outermost position that fits the given max
+         * width, measuring the word just up to that position.
+         *
+         * @param text           the text containing the word.
+         * @param start          the index of the first character of the word.
+         * @param end            the index after the last character of the word.
+         * @param fontDescriptor describing the font's type and size.
+         * @param maxWidth       the maximum width to obey.
+         * @return the index to break at, or <code>-1</code> if not even a
+         * single character fits.
+         * @throws IOException by pdfbox
+         */
+        protected int findHardBreakIndex(final CharSequence text,
+                                         final int start, final int end,
+                                         final FontDescriptor fontDescriptor, final float maxWidth)
+                throws IOException {
+            Pair<String> brokenWord = breakWordHard(
+                    text.subSequence(start, end).toString(), fontDescriptor,
+                    maxWidth);
+            if (brokenWord == null) {
+                return -1;
             }
+            int breakIndex = start + brokenWord.getFirst().length();
+            if (breakIndex <= start || breakIndex >= end) {
+                return -1;
+            }
+            return breakIndex;
+        }
 
-            return new Pair<String>(word.substring(0, cutIndex),
-                    word.substring(cutIndex));
+        private static int findFittingIndex(final CharSequence text,
+                                            final int start, final int end,
+                                            final FontDescriptor fontDescriptor, final float maxWidth)
+                throws IOException {
+            int breakIndex = start
+                    + fontDescriptor.getFittingCharacters(text, start, end,
+                    maxWidth);
+            if (breakIndex <= start || breakIndex >= end) {
+                return -1;
+            }
+            return breakIndex;
+        }
+
+        private static Pair<String> split(final String word,
+                                          final int breakIndex) {
+            if (breakIndex < 0) {
+                return null;
+            }
+            return new Pair<String>(word.substring(0, breakIndex),
+                    word.substring(breakIndex));
         }
 
     }
@@ -113,37 +198,161 @@ public class WordBreakers {
      */
     public static class DefaultWordBreaker extends AbstractWordBreaker {
 
-        /**
-         * A letter followed by either <code>-</code>, <code>.</code>,
-         * <code>,</code> or <code>/</code>.
-         */
-        private final Pattern breakPattern = Pattern
-                .compile("[A-Za-z\u00C0-\u00D6\u00D8-\u00F6\u00F8-\u00FF]([\\-\\.\\,/])");
-
         @Override
         protected Pair<String> breakWordSoft(final String word,
                                              final FontDescriptor fontDescriptor, final float maxWidth)
                 throws IOException {
-            Matcher matcher = breakPattern.matcher(word);
+            return AbstractWordBreaker.split(word, findSoftBreakIndex(word,
+                    0, word.length(), fontDescriptor, maxWidth));
+        }
+
+        @Override
+        protected int findSoftBreakIndex(final CharSequence text,
+                                         final int start, final int end,
+                                         final FontDescriptor fontDescriptor, final float maxWidth)
+                throws IOException {
             int breakIndex = -1;
-            boolean maxWidthExceeded = false;
-            while (!maxWidthExceeded && matcher.find()) {
-                int currentIndex = matcher.end();
-                if (currentIndex < word.length() - 1) {
-                    if (getStringWidth(word.substring(0, currentIndex),
-                            fontDescriptor) < maxWidth) {
-                        breakIndex = currentIndex;
-                    } else {
-                        maxWidthExceeded = true;
+            int measuredIndex = start;
+            float width = 0;
+            for (int index = start + 1; index < end - 2; index++) {
+                if (isBreakCharacter(text.charAt(index))
+                        && isLetter(text.charAt(index - 1))) {
+                    int currentIndex = index + 1;
+                    width += fontDescriptor.getStringWidth(text,
+                            measuredIndex, currentIndex);
+                    measuredIndex = currentIndex;
+                    if (width >= maxWidth) {
+                        break;
                     }
+                    breakIndex = currentIndex;
                 }
             }
+            return breakIndex;
+        }
 
-            if (breakIndex < 0) {
+        /**
+         * @param c the character to test.
+         * @return <code>true</code> if the character is either <code>-</code>,
+         * <code>.</code>, <code>,</code> or <code>/</code>.
+         */
+        private static boolean isBreakCharacter(final char c) {
+            return c == '-' || c == '.' || c == ',' || c == '/';
+        }
+
+        /**
+         * @param c the character to test.
+         * @return <code>true</code> if the character is a latin(-1) letter.
+         */
+        private static boolean isLetter(final char c) {
+            return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z')
+                    || (c >= '\u00C0' && c <= '\u00D6')
+                    || (c >= '\u00D8' && c <= '\u00F6')
+                    || (c >= '\u00F8' && c <= '\u00FF');
+        }
+
+    }
+
+    /**
+     * Extends the {@link DefaultWordBreaker} by hyphenating words using TeX
+     * patterns, see {@link Hyphenator}. Of all soft break positions that fit,
+     * the outermost one is used. If no patterns are available for the
+     * language, this breaker behaves like the {@link DefaultWordBreaker}.
+     */
+    public static class HyphenationWordBreaker extends DefaultWordBreaker
+            implements HyphenatingWordBreaker {
+
+        /**
+         * The hyphen appended to the head of a hyphenated word.
+         */
+        public final static String HYPHEN = "-";
+
+        private final Hyphenator hyphenator;
+
+        /**
+         * Creates a breaker using the hyphenation patterns for the language
+         * of the default locale, as required by the {@link WordBreakerFactory}.
+         */
+        public HyphenationWordBreaker() {
+            this(getDefaultHyphenator());
+        }
+
+        /**
+         * Creates a breaker using the given hyphenator.
+         *
+         * @param hyphenator the hyphenator to use, may be <code>null</code>.
+         */
+        public HyphenationWordBreaker(final Hyphenator hyphenator) {
+            this.hyphenator = hyphenator;
+        }
+
+        private static Hyphenator getDefaultHyphenator() {
+            Locale locale = Locale.getDefault();
+            try {
+                return Hyphenator.getInstance(locale.getLanguage() + "-"
+                        + locale.getCountry());
+            } catch (IOException e) {
+                // try the language only
+            }
+            try {
+                return Hyphenator.getInstance(locale.getLanguage());
+            } catch (IOException e) {
                 return null;
             }
-            return new Pair<String>(word.substring(0, breakIndex),
-                    word.substring(breakIndex));
+        }
+
+        @Override
+        protected int findSoftBreakIndex(final CharSequence text,
+                                         final int start, final int end,
+                                         final FontDescriptor fontDescriptor, final float maxWidth)
+                throws IOException {
+            int breakIndex = super.findSoftBreakIndex(text, start, end,
+                    fontDescriptor, maxWidth);
+            if (hyphenator == null) {
+                return breakIndex;
+            }
+            int[] points = hyphenator.getHyphenationPoints(text, start, end);
+            if (points.length == 0 || points[points.length - 1] <= breakIndex) {
+                return breakIndex;
+            }
+            float hyphenWidth = fontDescriptor.getStringWidth(HYPHEN, 0, 1);
+            int measuredIndex = start;
+            float width = 0;
+            for (int point : points) {
+                width += fontDescriptor.getStringWidth(text, measuredIndex,
+                        point);
+                measuredIndex = point;
+                if (width + hyphenWidth > maxWidth) {
+                    break;
+                }
+                if (point > breakIndex) {
+                    breakIndex = point;
+                }
+            }
+            return breakIndex;
+        }
+
+        @Override
+        protected int findHardBreakIndex(final CharSequence text,
+                                         final int start, final int end,
+                                         final FontDescriptor fontDescriptor, final float maxWidth)
+                throws IOException {
+            int breakIndex = super.findHardBreakIndex(text, start, end,
+                    fontDescriptor, maxWidth);
+            // a hard break must not be mistaken for hyphenation, since the
+            // hyphen would not fit
+            while (breakIndex > start + 1
+                    && isHyphenated(text, start, end, breakIndex)) {
+                --breakIndex;
+            }
+            return breakIndex;
+        }
+
+        @Override
+        public boolean isHyphenated(final CharSequence text, final int start,
+                                    final int end, final int breakIndex) {
+            return hyphenator != null
+                    && hyphenator.isHyphenationPoint(text, start, end,
+                    breakIndex);
         }
 
     }
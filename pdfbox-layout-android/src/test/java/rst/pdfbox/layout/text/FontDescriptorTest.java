@@ -0,0 +1,46 @@
+package rst.pdfbox.layout.text;
+
+import com.tom_roush.pdfbox.pdmodel.font.PDType1Font;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FontDescriptorTest {
+
+    @Test
+    public void testMetrics() throws Exception {
+        FontDescriptor fontDescriptor = new FontDescriptor(
+                PDType1Font.HELVETICA, 10);
+        assertEquals(PDType1Font.HELVETICA.getStringWidth("M") / 100,
+                fontDescriptor.getEmWidth(), 0.001);
+        assertEquals(PDType1Font.HELVETICA.getStringWidth(" ") / 100,
+                fontDescriptor.getSpaceWidth(), 0.001);
+        assertEquals(PDType1Font.HELVETICA.getStringWidth("Hello") / 100,
+                fontDescriptor.getStringWidth("Hello", 0, 5), 0.001);
+    }
+
+    @Test
+    public void testFontWithoutEm() throws Exception {
+        // ZapfDingbats has neither M nor a regular blank, but may still be
+        // used for the characters it has
+        FontDescriptor fontDescriptor = FontDescriptor.getInstance(
+                PDType1Font.ZAPF_DINGBATS, 10);
+        String checkMark = "\u2714";
+        assertEquals(PDType1Font.ZAPF_DINGBATS.getStringWidth(checkMark) / 100,
+                fontDescriptor.getStringWidth(checkMark, 0, 1), 0.001);
+
+        StyledText text = new StyledText(checkMark, fontDescriptor);
+        assertEquals(fontDescriptor.getStringWidth(checkMark, 0, 1),
+                text.getWidth(), 0.001);
+        new NewLine(fontDescriptor);
+
+        try {
+            fontDescriptor.getEmWidth();
+            fail("the missing M must be reported when asked for");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+package rst.pdfbox.layout.text;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import rst.pdfbox.layout.text.ControlCharacters.ControlCharacterFactory;
+import rst.pdfbox.layout.text.IndentCharacters.IndentCharacter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MarkupTokenizerTest {
+
+    private final static List<ControlCharacterFactory> FACTORIES = Arrays
+            .asList(ControlCharacters.NEWLINE_FACTORY,
+                    ControlCharacters.BOLD_FACTORY,
+                    ControlCharacters.ITALIC_FACTORY,
+                    IndentCharacters.INDENT_FACTORY);
+
+    @Test
+    public void splitsTextAndControlCharacters() {
+        assertEquals(Arrays.asList("a ", "BOLD", "b", "BOLD", " ", "ITALIC",
+                "c", "ITALIC", "NEWLINE", "d"), tokenize("a *b* _c_\nd"));
+        assertEquals(Arrays.asList("plain"), tokenize("plain"));
+        assertEquals(Arrays.asList("BOLD", "BOLD"), tokenize("**"));
+    }
+
+    @Test
+    public void unescapesText() {
+        assertEquals(Arrays.asList("2 * 3 = 6"), tokenize("2 \\* 3 = 6"));
+        assertEquals(Arrays.asList("snake_case ", "BOLD", "x", "BOLD"),
+                tokenize("snake\\_case *x*"));
+        assertEquals(Arrays.asList("a\\b"), tokenize("a\\\\b"));
+        assertEquals(Arrays.asList("-- no indent"), tokenize("\\-- no indent"));
+    }
+
+    @Test
+    public void matchesBeginOfLinePatternsAtBeginOfLineOnly() {
+        List<CharSequence> tokens = new MarkupTokenizer(FACTORIES)
+                .tokenize(Arrays.<CharSequence>asList("-- a\n  -- b -- c"));
+
+        assertEquals(Arrays.asList("INDENT", " a", "NEWLINE", "INDENT",
+                " b -- c"), toStrings(tokens));
+        assertEquals(1, ((IndentCharacter) tokens.get(0)).getLevel());
+        assertEquals(3, ((IndentCharacter) tokens.get(3)).getLevel());
+    }
+
+    @Test
+    public void tracksBeginOfLineAcrossParts() {
+        assertEquals(Arrays.asList("a", "NEWLINE", "INDENT", " b"),
+                tokenize("a\n", "-- b"));
+        assertEquals(Arrays.asList("a", "-- b"), tokenize("a", "-- b"));
+        assertEquals(Arrays.asList("a", "NEWLINE", "INDENT", " b"),
+                tokenize("a", new ControlCharacters.NewLineControlCharacter(),
+                        "-- b"));
+        // a control character at the begin of a line does not end it
+        assertEquals(Arrays.asList("BOLD", "INDENT", " b"), tokenize("*",
+                "-- b"));
+    }
+
+    @Test
+    public void earliestMatchWins() {
+        List<ControlCharacterFactory> factories = Arrays.asList(
+                ControlCharacters.BOLD_FACTORY,
+                ControlCharacters.ITALIC_FACTORY);
+
+        assertEquals(Arrays.asList("x", "ITALIC", "y", "BOLD", "z"),
+                toStrings(new MarkupTokenizer(factories).tokenize(Arrays
+                        .<CharSequence>asList("x_y*z"))));
+    }
+
+    @Test
+    public void firstFactoryWinsAtSamePosition() {
+        ControlCharacterFactory ab = new TestFactory("AB", "ab");
+        ControlCharacterFactory a = new TestFactory("A", "a");
+        List<CharSequence> markup = Arrays.<CharSequence>asList("xabx");
+
+        assertEquals(Arrays.asList("x", "AB", "x"), toStrings(
+                new MarkupTokenizer(Arrays.asList(ab, a)).tokenize(markup)));
+        assertEquals(Arrays.asList("x", "A", "bx"), toStrings(
+                new MarkupTokenizer(Arrays.asList(a, ab)).tokenize(markup)));
+    }
+
+    @Test
+    public void passesNonStringPartsThrough() {
+        CharSequence custom = new StringBuilder("*not markup*");
+        List<CharSequence> tokens = new MarkupTokenizer(FACTORIES)
+                .tokenize(Arrays.asList("*", custom));
+
+        assertEquals(2, tokens.size());
+        assertTrue(tokens.get(1) == custom);
+    }
+
+    private static List<String> tokenize(final CharSequence... markup) {
+        return toStrings(new MarkupTokenizer(FACTORIES).tokenize(Arrays
+                .asList(markup)));
+    }
+
+    private static List<String> toStrings(final List<CharSequence> tokens) {
+        List<String> result = new ArrayList<String>();
+        for (CharSequence token : tokens) {
+            result.add(token.toString());
+        }
+        return result;
+    }
+
+    /**
+     * Matches a fixed text, without any escaping.
+     */
+    private static class TestFactory implements ControlCharacterFactory {
+
+        private final ControlCharacter controlCharacter;
+        private final Pattern pattern;
+
+        TestFactory(final String description, final String text) {
+            this.controlCharacter = new ControlCharacter(description, null);
+            this.pattern = Pattern.compile(Pattern.quote(text));
+        }
+
+        @Override
+        public ControlCharacter createControlCharacter(String text,
+                                                       Matcher matcher, List<CharSequence> charactersSoFar) {
+            return controlCharacter;
+        }
+
+        @Override
+        public Pattern getPattern() {
+            return pattern;
+        }
+
+        @Override
+        public boolean patternMatchesBeginOfLine() {
+            return false;
+        }
+
+        @Override
+        public String unescape(String text) {
+            return text;
+        }
+    }
+
+}
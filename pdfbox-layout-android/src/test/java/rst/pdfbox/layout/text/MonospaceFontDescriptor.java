@@ -0,0 +1,35 @@
+package rst.pdfbox.layout.text;
+
+/**
+ * A font descriptor for tests, where every character is as wide as the font
+ * size. It does not need a font, so no font resources have to be loaded.
+ */
+public class MonospaceFontDescriptor extends FontDescriptor {
+
+    public MonospaceFontDescriptor(final float size) {
+        super(null, size);
+    }
+
+    @Override
+    public float getEmWidth() {
+        return getSize();
+    }
+
+    @Override
+    public float getSpaceWidth() {
+        return getSize();
+    }
+
+    @Override
+    public float getStringWidth(final CharSequence text, final int start,
+                                final int end) {
+        return (end - start) * getSize();
+    }
+
+    @Override
+    public int getFittingCharacters(final CharSequence text, final int start,
+                                    final int end, final float maxWidth) {
+        return Math.max(0, Math.min(end - start, (int) (maxWidth / getSize())));
+    }
+
+}
@@ -0,0 +1,262 @@
+package rst.pdfbox.layout.text;
+
+import android.graphics.Color;
+
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.PDPage;
+import com.tom_roush.pdfbox.pdmodel.PDPageContentStream;
+import com.tom_roush.pdfbox.pdmodel.font.PDType1Font;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TextLayoutTest {
+
+    private final static float DELTA = 0.001f;
+
+    /**
+     * Every character is 10 wide, every line 10 high.
+     */
+    private final FontDescriptor fontDescriptor = new MonospaceFontDescriptor(
+            10);
+
+    @Test
+    public void lineBreakerWrapsAtBlanks() throws Exception {
+        LineBreaker breaker = new LineBreaker(createFlow("aaa bbb ccc ddd"),
+                75);
+
+        assertEquals("aaa bbb", getText(breaker.nextLine()));
+        assertEquals("ccc ddd", getText(breaker.nextLine()));
+        assertNull(breaker.nextLine());
+    }
+
+    @Test
+    public void lineBreakerBreaksLongWordsHard() throws Exception {
+        LineBreaker breaker = new LineBreaker(
+                createFlow("abcdefghijklmnopqrstuvwxy"), 100);
+
+        assertEquals("abcdefghij", getText(breaker.nextLine()));
+        assertEquals("klmnopqrst", getText(breaker.nextLine()));
+        assertEquals("uvwxy", getText(breaker.nextLine()));
+        assertNull(breaker.nextLine());
+    }
+
+    @Test
+    public void lineBreakerKeepsHardNewLines() throws Exception {
+        LineBreaker breaker = new LineBreaker(createFlow("aaa", "", "bbb"),
+                100);
+
+        TextLine line = breaker.nextLine();
+        assertEquals("aaa", getText(line));
+        assertTrue(line.getNewLine() != null);
+        assertTrue(line.getNewLine() instanceof NewLine);
+        assertEquals("", getText(breaker.nextLine()));
+        assertEquals("bbb", getText(breaker.nextLine()));
+        assertNull(breaker.nextLine());
+    }
+
+    @Test
+    public void measuresLines() throws Exception {
+        TextLayout layout = new TextLayout(createFlow("aaa bbb ccc",
+                "ddddddd"), 75, 1.5f, false);
+
+        assertEquals(Arrays.asList("aaa bbb", "ccc", "ddddddd"),
+                getTexts(layout));
+        assertEquals(70, layout.getWidth(), DELTA);
+        assertEquals(40, layout.getHeight(), DELTA);
+        assertEquals(0, layout.getHeight(0), DELTA);
+        assertEquals(10, layout.getHeight(1), DELTA);
+        assertEquals(25, layout.getHeight(2), DELTA);
+        assertEquals(0, layout.getFittingLines(9.9f));
+        assertEquals(1, layout.getFittingLines(24.9f));
+        assertEquals(2, layout.getFittingLines(25));
+        assertEquals(3, layout.getFittingLines(100));
+    }
+
+    @Test
+    public void slicesShareLinesAndMetrics() throws Exception {
+        TextLayout layout = new TextLayout(createFlow("a", "bbbbb", "cc",
+                "ddd"), 100, 1.5f, false);
+
+        TextLayout slice = new TextLayout(layout, 1, 3, 0, false);
+        assertEquals(Arrays.asList("bbbbb", "cc"), getTexts(slice));
+        assertSame(layout.getLines().get(1), slice.getLines().get(0));
+        assertEquals(50, slice.getWidth(), DELTA);
+        // the line spacing is not applied to the first line of the slice
+        assertEquals(25, slice.getHeight(), DELTA);
+        assertEquals(1, slice.getFittingLines(24));
+
+        TextLayout spaced = new TextLayout(layout, 1, 3, 0, true);
+        assertEquals(30, spaced.getHeight(), DELTA);
+
+        // slices of slices refer to the original lines
+        TextLayout sliceOfSlice = new TextLayout(slice, 1, 2, 0, true);
+        assertEquals(Arrays.asList("cc"), getTexts(sliceOfSlice));
+        assertSame(layout.getLines().get(2), sliceOfSlice.getLines().get(0));
+        assertEquals(15, sliceOfSlice.getHeight(), DELTA);
+        assertEquals(20, sliceOfSlice.getWidth(), DELTA);
+    }
+
+    @Test
+    public void flowUsesSlicedLinesAsLongAsSliceable() throws Exception {
+        TextFlow source = createFlow("aaa bbb", "ccc");
+        source.setMaxWidth(50);
+        TextLayout layout = source.getLayout();
+
+        TextFlow view = new TextFlow();
+        view.setMaxWidth(50);
+        view.setLineSpacing(1);
+        view.setLines(layout, 1, 3);
+        assertEquals(Arrays.asList("bbb", "ccc"), getTexts(view.getLayout()));
+        assertSame(layout.getLines().get(1), view.getLayout().getLines()
+                .get(0));
+
+        // a different width wraps the text of the view again
+        view.setMaxWidth(100);
+        assertEquals(Arrays.asList("bbb", "ccc"), getTexts(view.getLayout()));
+        view.add(new StyledText(" ddd", fontDescriptor));
+        assertEquals(Arrays.asList("bbb", "ccc ddd"),
+                getTexts(view.getLayout()));
+    }
+
+    @Test
+    public void resumesAtLastNewLineBeforeModification() throws Exception {
+        TextFlow flow = createFlow("aaa bbb ccc", "ddd", "eee fff");
+        flow.setMaxWidth(75);
+        TextLayout previous = flow.getLayout();
+        assertEquals(Arrays.asList("aaa bbb", "ccc", "ddd", "eee fff"),
+                getTexts(previous));
+
+        flow.add(new StyledText(" ggg", fontDescriptor));
+        TextLayout resumed = flow.getLayout();
+
+        assertEquals(Arrays.asList("aaa bbb", "ccc", "ddd", "eee fff",
+                "ggg"), getTexts(resumed));
+        // the lines in front of the last new line have been reused
+        for (int index = 0; index < 3; ++index) {
+            assertSame(previous.getLines().get(index), resumed.getLines()
+                    .get(index));
+        }
+        assertEquals(fresh(flow).getHeight(), resumed.getHeight(), DELTA);
+        assertEquals(fresh(flow).getWidth(), resumed.getWidth(), DELTA);
+    }
+
+    @Test
+    public void resumesAfterRemovingFragments() throws Exception {
+        TextFlow flow = createFlow("aaa", "bbb ccc", "ddd");
+        flow.setMaxWidth(75);
+        flow.getLayout();
+
+        flow.removeLast();
+        flow.removeLast();
+        flow.add(new StyledText(" eeeeeee", fontDescriptor));
+        TextLayout resumed = flow.getLayout();
+
+        assertEquals(getTexts(fresh(flow)), getTexts(resumed));
+        assertEquals(Arrays.asList("aaa", "bbb ccc", "eeeeeee"),
+                getTexts(resumed));
+        assertEquals(fresh(flow).getHeight(), resumed.getHeight(), DELTA);
+    }
+
+    @Test
+    public void reusesLayoutForSameParameters() throws Exception {
+        TextFlow flow = createFlow("aaa bbb");
+        flow.setMaxWidth(50);
+        TextLayout layout = flow.getLayout();
+
+        assertSame(layout, flow.getLayout());
+        flow.setMaxWidth(100);
+        assertEquals(Arrays.asList("aaa bbb"), getTexts(flow.getLayout()));
+    }
+
+    @Test
+    public void justifiedRunsReportTheirStretchedWidth() throws Exception {
+        // word spacing needs simple fonts, so a real one is used here
+        TextFlow flow = new TextFlow();
+        flow.addText("aaa bbb ", 10, PDType1Font.HELVETICA);
+        flow.addText("ccc ddd eee fff ggg hhh", 10, PDType1Font.HELVETICA,
+                Color.RED);
+        flow.setMaxWidth(120);
+
+        final List<float[]> drawn = new ArrayList<float[]>();
+        PDDocument pdDocument = new PDDocument();
+        try {
+            PDPage page = new PDPage();
+            pdDocument.addPage(page);
+            PDPageContentStream contentStream = new PDPageContentStream(
+                    pdDocument, page);
+            flow.drawText(contentStream, new Position(0, 500),
+                    Alignment.Justify, new DrawListener() {
+
+                        @Override
+                        public void drawn(Object drawnObject,
+                                          Position upperLeft, float width, float height) {
+                            drawn.add(new float[]{upperLeft.getX(),
+                                    upperLeft.getY(), width});
+                        }
+                    });
+            contentStream.close();
+        } finally {
+            pdDocument.close();
+        }
+
+        // the runs of the first line follow each other without gaps, and
+        // the last one ends at the max width
+        float y = drawn.get(0)[1];
+        float x = 0;
+        int index = 0;
+        for (; index < drawn.size() && drawn.get(index)[1] == y; ++index) {
+            assertEquals(x, drawn.get(index)[0], DELTA);
+            x += drawn.get(index)[2];
+        }
+        assertTrue(index > 2);
+        assertEquals(flow.getMaxWidth(), x, DELTA);
+    }
+
+    /**
+     * Creates a flow of the given lines, separated by new lines.
+     */
+    private TextFlow createFlow(final String... lines) {
+        TextFlow flow = new TextFlow();
+        flow.setLineSpacing(1);
+        for (int index = 0; index < lines.length; ++index) {
+            if (index > 0) {
+                flow.add(new NewLine(fontDescriptor));
+            }
+            if (lines[index].length() > 0) {
+                flow.add(new StyledText(lines[index], fontDescriptor));
+            }
+        }
+        return flow;
+    }
+
+    private static TextLayout fresh(final TextFlow flow) throws Exception {
+        return new TextLayout(flow, flow.getMaxWidth(), flow.getLineSpacing(),
+                flow.isApplyLineSpacingToFirstLine());
+    }
+
+    private static List<String> getTexts(final TextLayout layout) {
+        List<String> texts = new ArrayList<String>();
+        for (TextLine line : layout.getLines()) {
+            texts.add(getText(line));
+        }
+        return texts;
+    }
+
+    private static String getText(final TextLine line) {
+        StringBuilder text = new StringBuilder();
+        for (StyledText styledText : line.getStyledTexts()) {
+            text.append(styledText.getText());
+        }
+        return text.toString();
+    }
+
+}
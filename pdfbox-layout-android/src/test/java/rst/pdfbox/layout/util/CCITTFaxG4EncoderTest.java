@@ -0,0 +1,135 @@
+package rst.pdfbox.layout.util;
+
+import com.tom_roush.pdfbox.cos.COSDictionary;
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.filter.Filter;
+import com.tom_roush.pdfbox.filter.FilterFactory;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class CCITTFaxG4EncoderTest {
+
+    @Test
+    public void encodesBlankImage() throws Exception {
+        assertRoundTrip(new boolean[8][100]);
+    }
+
+    @Test
+    public void encodesBlackImage() throws Exception {
+        boolean[][] image = new boolean[8][100];
+        for (boolean[] row : image) {
+            Arrays.fill(row, true);
+        }
+        assertRoundTrip(image);
+    }
+
+    @Test
+    public void encodesSinglePixelImages() throws Exception {
+        assertRoundTrip(new boolean[][]{{true}});
+        assertRoundTrip(new boolean[][]{{false}});
+    }
+
+    @Test
+    public void encodesVerticalEdges() throws Exception {
+        // slightly shifted edges from row to row use the vertical modes
+        boolean[][] image = new boolean[40][64];
+        for (int y = 0; y < image.length; ++y) {
+            for (int x = 10 + y % 4; x < 50 - y % 3; ++x) {
+                image[y][x] = true;
+            }
+        }
+        assertRoundTrip(image);
+    }
+
+    @Test
+    public void encodesLongRuns() throws Exception {
+        // runs longer than 2560 pixels need multiple makeup codes
+        boolean[][] image = new boolean[3][6000];
+        for (int x = 3; x < 5900; ++x) {
+            image[1][x] = true;
+        }
+        image[2][5999] = true;
+        assertRoundTrip(image);
+    }
+
+    @Test
+    public void encodesRandomImages() throws Exception {
+        Random random = new Random(4711);
+        for (int test = 0; test < 20; ++test) {
+            int width = 1 + random.nextInt(300);
+            int height = 1 + random.nextInt(30);
+            boolean[][] image = new boolean[height][width];
+            for (int y = 0; y < height; ++y) {
+                boolean black = random.nextBoolean();
+                int x = 0;
+                while (x < width) {
+                    int length = 1 + random.nextInt(random.nextBoolean() ? 4
+                            : 100);
+                    for (int i = 0; i < length && x < width; ++i, ++x) {
+                        // resemble the row above most of the time
+                        image[y][x] = y > 0 && random.nextInt(4) > 0 ? image[y - 1][x]
+                                : black;
+                    }
+                    black = !black;
+                }
+            }
+            assertRoundTrip(image);
+        }
+    }
+
+    /**
+     * Encodes the image, decodes it using the <code>CCITTFaxDecode</code>
+     * filter of pdfbox and compares the result.
+     */
+    private static void assertRoundTrip(final boolean[][] image)
+            throws IOException {
+        int width = image[0].length;
+        CCITTFaxG4Encoder encoder = new CCITTFaxG4Encoder(width);
+        for (boolean[] row : image) {
+            encoder.encodeLine(row.clone());
+        }
+        boolean[][] decoded = decode(encoder.finish(), width, image.length);
+        for (int y = 0; y < image.length; ++y) {
+            assertArrayEquals("row " + y, image[y], decoded[y]);
+        }
+    }
+
+    private static boolean[][] decode(final byte[] data, final int width,
+                                      final int height) throws IOException {
+        COSDictionary decodeParms = new COSDictionary();
+        decodeParms.setInt(COSName.K, -1);
+        decodeParms.setInt(COSName.COLUMNS, width);
+        decodeParms.setInt(COSName.ROWS, height);
+        COSDictionary parameters = new COSDictionary();
+        parameters.setItem(COSName.FILTER, COSName.CCITTFAX_DECODE);
+        parameters.setItem(COSName.DECODE_PARMS, decodeParms);
+
+        Filter filter = FilterFactory.INSTANCE
+                .getFilter(COSName.CCITTFAX_DECODE);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        filter.decode(new ByteArrayInputStream(data), out, parameters, 0);
+        byte[] bits = out.toByteArray();
+
+        int rowLength = (width + 7) / 8;
+        assertEquals(rowLength * height, bits.length);
+        boolean[][] image = new boolean[height][width];
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                int bit = bits[y * rowLength + x / 8] >> (7 - x % 8) & 1;
+                // without BlackIs1, 0 is black
+                image[y][x] = bit == 0;
+            }
+        }
+        return image;
+    }
+
+}
@@ -0,0 +1,111 @@
+package rst.pdfbox.layout.util;
+
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HyphenatorTest {
+
+    /**
+     * The patterns hyphenating <code>hyphenation</code> in Liang's thesis.
+     */
+    private final static String PATTERNS = "hy3ph he2n hena4 hen5at 1na n2at 1tio 2io o2n";
+
+    @Test
+    public void findsPointsOfPatterns() throws Exception {
+        Hyphenator hyphenator = new Hyphenator(new StringReader(PATTERNS));
+
+        assertArrayEquals(new int[]{2, 6},
+                hyphenator.getHyphenationPoints("hyphenation", 0, 11));
+    }
+
+    @Test
+    public void findsPointsOfAllWordsInRange() throws Exception {
+        Hyphenator hyphenator = new Hyphenator(new StringReader(PATTERNS));
+        String text = "(Hyphenation, hyphenation)";
+
+        assertArrayEquals(new int[]{3, 7, 16, 20},
+                hyphenator.getHyphenationPoints(text, 0, text.length()));
+        assertArrayEquals(new int[]{16, 20},
+                hyphenator.getHyphenationPoints(text, 12, text.length()));
+        assertArrayEquals(new int[0],
+                hyphenator.getHyphenationPoints("unknown", 0, 7));
+    }
+
+    @Test
+    public void matchesWordBoundaries() throws Exception {
+        Hyphenator hyphenator = new Hyphenator(new StringReader(
+                ".ab1cde ab3xyz fgh1ij."), 1, 1, 16);
+
+        assertArrayEquals(new int[]{2},
+                hyphenator.getHyphenationPoints("abcde", 0, 5));
+        assertArrayEquals(new int[0],
+                hyphenator.getHyphenationPoints("zabcde", 0, 6));
+        assertArrayEquals(new int[]{3},
+                hyphenator.getHyphenationPoints("fghij", 0, 5));
+        assertArrayEquals(new int[0],
+                hyphenator.getHyphenationPoints("fghijk", 0, 6));
+    }
+
+    @Test
+    public void higherLevelsWin() throws Exception {
+        Hyphenator hyphenator = new Hyphenator(new StringReader(
+                "b1c ab2cd"), 1, 1, 16);
+
+        assertArrayEquals(new int[]{2},
+                hyphenator.getHyphenationPoints("xbcx", 0, 4));
+        assertArrayEquals(new int[0],
+                hyphenator.getHyphenationPoints("abcd", 0, 4));
+    }
+
+    @Test
+    public void exceptionsOverridePatterns() throws Exception {
+        Hyphenator hyphenator = new Hyphenator(new StringReader(
+                "% Liang's example\n\\patterns{\n" + PATTERNS
+                        + "\n}\n\\hyphenation{hy-phe-na-tion\nta-ble}\n"),
+                1, 1, 16);
+
+        assertArrayEquals(new int[]{2, 5, 7},
+                hyphenator.getHyphenationPoints("Hyphenation", 0, 11));
+        assertArrayEquals(new int[]{2},
+                hyphenator.getHyphenationPoints("table", 0, 5));
+    }
+
+    @Test
+    public void obeysLeftAndRightMin() throws Exception {
+        assertArrayEquals(new int[]{6}, new Hyphenator(new StringReader(
+                PATTERNS), 3, 3, 16).getHyphenationPoints("hyphenation", 0,
+                11));
+        assertArrayEquals(new int[]{2}, new Hyphenator(new StringReader(
+                PATTERNS), 2, 6, 16).getHyphenationPoints("hyphenation", 0,
+                11));
+        // shorter than left and right min
+        assertArrayEquals(new int[0], new Hyphenator(new StringReader(
+                "a1b"), 2, 3, 16).getHyphenationPoints("aab", 0, 3));
+    }
+
+    @Test
+    public void isHyphenationPoint() throws Exception {
+        Hyphenator hyphenator = new Hyphenator(new StringReader(PATTERNS));
+        String text = "a hyphenation";
+
+        assertTrue(hyphenator.isHyphenationPoint(text, 0, text.length(), 4));
+        assertTrue(hyphenator.isHyphenationPoint(text, 0, text.length(), 8));
+        assertFalse(hyphenator.isHyphenationPoint(text, 0, text.length(), 5));
+        assertFalse(hyphenator.isHyphenationPoint(text, 0, text.length(), 2));
+        // the range cuts the word
+        assertFalse(hyphenator.isHyphenationPoint(text, 0, 10, 8));
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void getInstanceFailsForUnknownLanguage() throws IOException {
+        Hyphenator.getInstance("xx-unknown");
+    }
+
+}
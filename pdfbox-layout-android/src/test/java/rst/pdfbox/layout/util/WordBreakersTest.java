@@ -0,0 +1,113 @@
+package rst.pdfbox.layout.util;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import rst.pdfbox.layout.text.FontDescriptor;
+import rst.pdfbox.layout.text.MonospaceFontDescriptor;
+import rst.pdfbox.layout.util.WordBreakers.AbstractWordBreaker;
+import rst.pdfbox.layout.util.WordBreakers.DefaultWordBreaker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class WordBreakersTest {
+
+    private final FontDescriptor fontDescriptor = new MonospaceFontDescriptor(
+            10);
+
+    @Test
+    public void findBreakIndexBreaksSoftly() throws Exception {
+        WordBreaker wordBreaker = new DefaultWordBreaker();
+        String text = "xx well-known xx";
+
+        assertEquals(8, ((IndexedWordBreaker) wordBreaker).findBreakIndex(
+                text, 3, 13, fontDescriptor, 65, true));
+        assertEquals(new Pair<String>("well-", "known"), wordBreaker
+                .breakWord("well-known", fontDescriptor, 65, true));
+    }
+
+    @Test
+    public void findBreakIndexBreaksHardAtOutermostFittingPosition()
+            throws Exception {
+        IndexedWordBreaker wordBreaker = new DefaultWordBreaker();
+        String text = "xx abcdefgh xx";
+
+        assertEquals(7, wordBreaker.findBreakIndex(text, 3, 11,
+                fontDescriptor, 45, true));
+        assertEquals(-1, wordBreaker.findBreakIndex(text, 3, 11,
+                fontDescriptor, 45, false));
+        assertEquals(-1, wordBreaker.findBreakIndex(text, 3, 11,
+                fontDescriptor, 5, true));
+    }
+
+    @Test
+    public void findBreakIndexUsesOverriddenBreakWordHard() throws Exception {
+        IndexedWordBreaker wordBreaker = new FixedHardWordBreaker(2);
+        String text = "xx abcdefgh xx";
+
+        assertEquals(5, wordBreaker.findBreakIndex(text, 3, 11,
+                fontDescriptor, 45, true));
+        assertEquals(-1, wordBreaker.findBreakIndex(text, 3, 11,
+                fontDescriptor, 45, false));
+    }
+
+    @Test
+    public void breakWordUsesOverriddenBreakWordHard() throws Exception {
+        WordBreaker wordBreaker = new FixedHardWordBreaker(2);
+
+        assertEquals(new Pair<String>("ab", "cdefgh"), wordBreaker.breakWord(
+                "abcdefgh", fontDescriptor, 45, true));
+        assertNull(wordBreaker.breakWord("abcdefgh", fontDescriptor, 45,
+                false));
+    }
+
+    @Test
+    public void overriddenBreakWordHardMayCallSuper() throws Exception {
+        WordBreaker wordBreaker = new AbstractWordBreaker() {
+
+            @Override
+            protected Pair<String> breakWordSoft(String word,
+                                                 FontDescriptor fontDescriptor, float maxWidth) {
+                return null;
+            }
+
+            @Override
+            protected Pair<String> breakWordHard(String word,
+                                                 FontDescriptor fontDescriptor, float maxWidth)
+                    throws IOException {
+                return super.breakWordHard(word, fontDescriptor, maxWidth);
+            }
+        };
+
+        assertEquals(new Pair<String>("abcd", "efgh"), wordBreaker.breakWord(
+                "abcdefgh", fontDescriptor, 45, true));
+    }
+
+    /**
+     * Never breaks softly, and hard after a fixed number of characters.
+     */
+    private static class FixedHardWordBreaker extends AbstractWordBreaker {
+
+        private final int length;
+
+        FixedHardWordBreaker(final int length) {
+            this.length = length;
+        }
+
+        @Override
+        protected Pair<String> breakWordSoft(String word,
+                                             FontDescriptor fontDescriptor, float maxWidth) {
+            return null;
+        }
+
+        @Override
+        protected Pair<String> breakWordHard(String word,
+                                             FontDescriptor fontDescriptor, float maxWidth) {
+            return new Pair<String>(word.substring(0, length),
+                    word.substring(length));
+        }
+    }
+
+}